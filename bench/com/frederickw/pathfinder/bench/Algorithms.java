@@ -0,0 +1,131 @@
+package com.frederickw.pathfinder.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.frederickw.pathfinder.Algorithm;
+import com.frederickw.pathfinder.AlgorithmFactory;
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.algorithm.ARAStar;
+import com.frederickw.pathfinder.algorithm.AStar;
+import com.frederickw.pathfinder.algorithm.BBFS;
+import com.frederickw.pathfinder.algorithm.CostMode;
+import com.frederickw.pathfinder.algorithm.DStarLite;
+import com.frederickw.pathfinder.algorithm.Dijkstra;
+import com.frederickw.pathfinder.algorithm.HPAStar;
+import com.frederickw.pathfinder.algorithm.JPS;
+import com.frederickw.pathfinder.algorithm.LandmarkHeuristic;
+
+/**
+ * The algorithms the benchmarks run, by name, in the order they are
+ * reported.
+ */
+public final class Algorithms {
+
+	// Runs the target side of parallel bidirectional searches.
+	private static final ExecutorService EXECUTOR = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "bench-bbfs");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private Algorithms() {
+	}
+
+	/**
+	 * Returns a factory for every algorithm, set up for searches on
+	 * {@code map}.
+	 */
+	public static Map<String, AlgorithmFactory> forMap(final GridMap map) {
+		Map<String, AlgorithmFactory> factories = new LinkedHashMap<String, AlgorithmFactory>();
+		factories.put("astar", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new AStar(AStar.EUCLIDEAN_DISTANCE);
+			}
+		});
+		factories.put("dijkstra", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new Dijkstra();
+			}
+		});
+		factories.put("astar.octile", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new AStar(AStar.OCTILE_DISTANCE);
+			}
+		});
+		// The landmark tables are built on creation, so outside the
+		// measurement.
+		factories.put("astar.alt", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new AStar(LandmarkHeuristic.build(map));
+			}
+		});
+		factories.put("astar.weighted", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new AStar(AStar.EUCLIDEAN_DISTANCE, 2.0);
+			}
+		});
+		factories.put("ara", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new ARAStar(AStar.EUCLIDEAN_DISTANCE);
+			}
+		});
+		factories.put("astar.fixed", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new AStar(AStar.EUCLIDEAN_DISTANCE, CostMode.FIXED_POINT);
+			}
+		});
+		factories.put("dijkstra.fixed", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new Dijkstra(CostMode.FIXED_POINT);
+			}
+		});
+		factories.put("bbfs", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new BBFS();
+			}
+		});
+		factories.put("bbfs.parallel", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new BBFS(EXECUTOR);
+			}
+		});
+		factories.put("jps", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new JPS();
+			}
+		});
+		factories.put("hpa", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new HPAStar();
+			}
+		});
+		factories.put("dstar", new AlgorithmFactory() {
+			@Override
+			public Algorithm create() {
+				return new DStarLite();
+			}
+		});
+		return factories;
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.frederickw.pathfinder.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the search and heap benchmarks and reports throughput and allocation.
+ * It is a quick check while working; the JMH benchmarks in {@code jmh},
+ * run with {@code ./gradlew jmh}, cover the same workloads in forked JVMs
+ * and are the ones to trust.
+ * <p>
+ * Each workload is warmed up, then measured for a number of fixed-length
+ * iterations on the calling thread. Allocation is read from the JVM's
+ * per-thread allocation counter and garbage collection from the collector
+ * beans, so no agent is needed. Run it through Gradle, for example:
+ *
+ * <pre>
+ * ./gradlew benchmark -PbenchArgs='-i 5 -t 1000 search\.maze\..*'
+ * </pre>
+ *
+ * Options: {@code -w} warm-up iterations (default 3), {@code -i} measured
+ * iterations (default 5), {@code -t} milliseconds per iteration (default
+ * 1000). The optional last argument is a regular expression that benchmark
+ * names must match.
+ */
+public final class BenchmarkRunner {
+
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	private int warmups = 3;
+	private int iterations = 5;
+	private long iterationNanos = 1000000000L;
+	private Pattern filter = Pattern.compile(".*");
+
+	private static com.sun.management.ThreadMXBean threads() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+			if (threads.isThreadAllocatedMemorySupported()) {
+				threads.setThreadAllocatedMemoryEnabled(true);
+				return threads;
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] args) {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-w")) {
+				runner.warmups = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-i")) {
+				runner.iterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-t")) {
+				runner.iterationNanos = Long.parseLong(args[++i]) * 1000000L;
+			} else {
+				runner.filter = Pattern.compile(args[i]);
+			}
+		}
+		List<Workload> workloads = new ArrayList<Workload>();
+		workloads.addAll(HeapBenchmarks.create());
+		workloads.addAll(SearchBenchmarks.create());
+		runner.run(workloads);
+	}
+
+	public void run(List<Workload> workloads) {
+		System.out.printf("%-32s %14s %12s %14s %12s %8s%n", "Benchmark",
+				"ops/s", "error", "alloc B/op", "alloc MB/s", "gc");
+		long sink = 0;
+		for (Workload workload : workloads) {
+			if (!filter.matcher(workload.getName()).matches()) {
+				continue;
+			}
+			workload.setUp();
+			for (int i = 0; i < warmups; i++) {
+				iterate(workload);
+			}
+			double[] throughput = new double[iterations];
+			long ops = 0;
+			long nanos = 0;
+			long bytes = allocatedBytes();
+			long collections = collections();
+			for (int i = 0; i < iterations; i++) {
+				long start = System.nanoTime();
+				long done = iterate(workload);
+				long elapsed = System.nanoTime() - start;
+				throughput[i] = done * 1e9 / elapsed;
+				ops += done;
+				nanos += elapsed;
+			}
+			bytes = allocatedBytes() - bytes;
+			collections = collections() - collections;
+			sink += workload.drainSink();
+			System.out.printf("%-32s %14.1f %12.1f %14.1f %12.1f %8d%n",
+					workload.getName(), mean(throughput), error(throughput),
+					bytes < 0 ? Double.NaN : (double) bytes / ops,
+					bytes < 0 ? Double.NaN : bytes * 1e3 / nanos, collections);
+		}
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	private long iterate(Workload workload) {
+		long ops = 0;
+		long deadline = System.nanoTime() + iterationNanos;
+		do {
+			ops += workload.run();
+		} while (System.nanoTime() < deadline);
+		return ops;
+	}
+
+	static long allocatedBytes() {
+		if (THREADS == null) {
+			return Long.MIN_VALUE;
+		}
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static long collections() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory
+				.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0;
+		for (double value : values) {
+			sum += value;
+		}
+		return sum / values.length;
+	}
+
+	private static double error(double[] values) {
+		if (values.length < 2) {
+			return Double.NaN;
+		}
+		double mean = mean(values);
+		double squares = 0;
+		for (double value : values) {
+			squares += (value - mean) * (value - mean);
+		}
+		return Math.sqrt(squares / (values.length - 1));
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.frederickw.pathfinder.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.frederickw.pathfinder.struct.BinaryHeap;
+import com.frederickw.pathfinder.struct.BucketQueue;
+import com.frederickw.pathfinder.struct.IntBinaryHeap;
+
+/**
+ * Microbenchmarks for the priority queues. One operation is one add, poll
+ * or priority update.
+ */
+public final class HeapBenchmarks {
+
+	private static final int SIZE = 10000;
+	// Key range of the bucket queue, as for one step of fixed-point A*.
+	private static final int SPAN = 239;
+	private static final long SEED = 0x5eed;
+
+	private HeapBenchmarks() {
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+
+		final int index;
+		double key;
+
+		Entry(int index, double key) {
+			this.index = index;
+			this.key = key;
+		}
+
+		@Override
+		public int compareTo(Entry entry) {
+			return Double.compare(key, entry.key);
+		}
+
+	}
+
+	private static Entry[] entries() {
+		Random random = new Random(SEED);
+		Entry[] entries = new Entry[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			entries[i] = new Entry(i, random.nextDouble());
+		}
+		return entries;
+	}
+
+	private static int[] updateOrder() {
+		Random random = new Random(SEED + 1);
+		int[] order = new int[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			order[i] = random.nextInt(SIZE);
+		}
+		return order;
+	}
+
+	public static List<Workload> create() {
+		List<Workload> workloads = new ArrayList<Workload>();
+
+		workloads.add(new Workload("heap.binary.addPoll") {
+
+			private final Entry[] entries = entries();
+			private final BinaryHeap<Entry> heap = new BinaryHeap<Entry>(SIZE);
+
+			@Override
+			public int run() {
+				for (Entry entry : entries) {
+					heap.add(entry);
+				}
+				while (!heap.isEmpty()) {
+					sink += heap.poll().index;
+				}
+				return 2 * SIZE;
+			}
+
+		});
+
+		workloads.add(new Workload("heap.binary.resort") {
+
+			private final Entry[] entries = entries();
+			private final int[] order = updateOrder();
+			private final BinaryHeap<Entry> heap = new BinaryHeap<Entry>(SIZE);
+
+			@Override
+			public void setUp() {
+				for (Entry entry : entries) {
+					heap.add(entry);
+				}
+			}
+
+			@Override
+			public int run() {
+				// Only a slice: resort() is linear, the full pass takes seconds.
+				for (int i = 0; i < SIZE / 10; i++) {
+					Entry entry = entries[order[i]];
+					entry.key -= 1e-9;
+					sink += heap.resort(entry) ? 1 : 0;
+				}
+				return SIZE / 10;
+			}
+
+		});
+
+		workloads.add(new Workload("heap.int.addPoll") {
+
+			private final Entry[] entries = entries();
+			private final IntBinaryHeap heap = new IntBinaryHeap(SIZE);
+
+			@Override
+			public int run() {
+				for (Entry entry : entries) {
+					heap.add(entry.index, entry.key);
+				}
+				while (!heap.isEmpty()) {
+					sink += heap.poll();
+				}
+				return 2 * SIZE;
+			}
+
+		});
+
+		workloads.add(new Workload("heap.bucket.addPoll") {
+
+			private final Entry[] entries = entries();
+			private final BucketQueue queue = new BucketQueue(SPAN);
+
+			@Override
+			public int run() {
+				// Keys start over, so forget the last one polled.
+				queue.clear();
+				for (Entry entry : entries) {
+					queue.add(entry.index, (int) (entry.key * SPAN));
+				}
+				while (!queue.isEmpty()) {
+					sink += queue.poll();
+				}
+				return 2 * SIZE;
+			}
+
+		});
+
+		return workloads;
+	}
+
+}
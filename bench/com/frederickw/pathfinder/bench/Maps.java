@@ -0,0 +1,143 @@
+package com.frederickw.pathfinder.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.struct.BitGrid;
+
+/**
+ * Seeded map and query generators, so every run benchmarks the same grids.
+ */
+public final class Maps {
+
+	private Maps() {
+	}
+
+	public static GridMap open(int size) {
+		return new GridMap(size, size);
+	}
+
+	public static GridMap random(int size, double density, long seed) {
+		Random random = new Random(seed);
+		BitGrid walls = new BitGrid(size, size);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				if (random.nextDouble() < density) {
+					walls.set(x, y);
+				}
+			}
+		}
+		return new GridMap(size, size, walls.toLongArray(size, size));
+	}
+
+	/**
+	 * A perfect maze carved by a randomised depth-first search: corridors on
+	 * even coordinates, one cell wide, with walls in between.
+	 */
+	public static GridMap maze(int size, long seed) {
+		Random random = new Random(seed);
+		BitGrid walls = new BitGrid(size, size);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				walls.set(x, y);
+			}
+		}
+		int[] stack = new int[size * size];
+		int top = 0;
+		walls.clear(0, 0);
+		stack[top++] = 0;
+		int[] choices = new int[4];
+		while (top > 0) {
+			int cell = stack[top - 1];
+			int x = cell % size;
+			int y = cell / size;
+			int count = 0;
+			if (x >= 2 && walls.get(x - 2, y)) {
+				choices[count++] = cell - 2;
+			}
+			if (x + 2 < size && walls.get(x + 2, y)) {
+				choices[count++] = cell + 2;
+			}
+			if (y >= 2 && walls.get(x, y - 2)) {
+				choices[count++] = cell - 2 * size;
+			}
+			if (y + 2 < size && walls.get(x, y + 2)) {
+				choices[count++] = cell + 2 * size;
+			}
+			if (count == 0) {
+				top--;
+				continue;
+			}
+			int next = choices[random.nextInt(count)];
+			int nx = next % size;
+			int ny = next / size;
+			walls.clear((x + nx) / 2, (y + ny) / 2);
+			walls.clear(nx, ny);
+			stack[top++] = next;
+		}
+		return new GridMap(size, size, walls.toLongArray(size, size));
+	}
+
+	/**
+	 * Returns {@code count} maps, each the one before it with a few cells
+	 * around a random spot toggled, as on a map whose obstacles move. The
+	 * ends of {@code query} are never walled.
+	 */
+	public static GridMap[] edits(GridMap map, PathQuery query, int count,
+			long seed) {
+		Random random = new Random(seed);
+		int width = map.getWidth();
+		int height = map.getHeight();
+		BitGrid walls = new BitGrid(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (map.isWall(x, y)) {
+					walls.set(x, y);
+				}
+			}
+		}
+		GridMap[] maps = new GridMap[count];
+		for (int i = 0; i < count; i++) {
+			int cx = random.nextInt(width);
+			int cy = random.nextInt(height);
+			for (int k = 0; k < 4; k++) {
+				int x = Math.min(width - 1, Math.max(0, cx + random.nextInt(5) - 2));
+				int y = Math.min(height - 1, Math.max(0, cy + random.nextInt(5) - 2));
+				if ((x == query.sourceX && y == query.sourceY)
+						|| (x == query.targetX && y == query.targetY)) {
+					continue;
+				}
+				if (!walls.clear(x, y)) {
+					walls.set(x, y);
+				}
+			}
+			maps[i] = new GridMap(width, height, walls.toLongArray(width,
+					height));
+		}
+		return maps;
+	}
+
+	/**
+	 * Picks queries between random open cells. Reachability is not checked;
+	 * unreachable queries are part of the workload.
+	 */
+	public static PathQuery[] queries(GridMap map, int count, long seed) {
+		Random random = new Random(seed);
+		List<PathQuery> queries = new ArrayList<PathQuery>(count);
+		while (queries.size() < count) {
+			int sx = random.nextInt(map.getWidth());
+			int sy = random.nextInt(map.getHeight());
+			int tx = random.nextInt(map.getWidth());
+			int ty = random.nextInt(map.getHeight());
+			if (!map.isWall(sx, sy) && !map.isWall(tx, ty)
+					&& (sx != tx || sy != ty)) {
+				queries.add(new PathQuery(sx, sy, tx, ty));
+			}
+		}
+		return queries.toArray(new PathQuery[count]);
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.frederickw.pathfinder.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.MapData;
+import com.frederickw.pathfinder.MapFile;
+import com.frederickw.pathfinder.PathQuery;
+
+/**
+ * Reads the grid maps and scenarios of the Moving AI pathfinding benchmarks
+ * ({@code .map} and {@code .scen} files). Only {@code '.'}, {@code 'G'} and
+ * {@code 'S'} cells are passable; water, trees and out-of-bounds cells
+ * become walls. The reference lengths assume octile moves without corner
+ * cutting, as {@link GridMap} does.
+ * <p>
+ * Run on its own it converts a map to the binary {@link MapFile} format,
+ * in the chunked layout if also given the side of a chunk:
+ *
+ * <pre>
+ * java -cp out com.frederickw.pathfinder.bench.MovingAi arena.map arena.pfm 256
+ * </pre>
+ */
+public final class MovingAi {
+
+	/** One query of a scenario file with the length of the shortest path. */
+	public static final class Scenario {
+
+		public final int bucket;
+		public final String map;
+		public final PathQuery query;
+		public final double optimal;
+
+		Scenario(int bucket, String map, PathQuery query, double optimal) {
+			this.bucket = bucket;
+			this.map = map;
+			this.query = query;
+			this.optimal = optimal;
+		}
+
+	}
+
+	private MovingAi() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2 && args.length != 3) {
+			System.err.println("usage: MovingAi map-file binary-file "
+					+ "[chunk-side]");
+			System.exit(2);
+		}
+		GridMap map = readMap(new File(args[0])).toGridMap();
+		if (args.length == 3) {
+			MapFile.writeChunked(map, new File(args[1]),
+					Integer.parseInt(args[2]));
+		} else {
+			MapFile.write(map, new File(args[1]));
+		}
+	}
+
+	public static MapData readMap(File file) throws IOException {
+		BufferedReader reader = open(file);
+		try {
+			return readMap(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	public static MapData readMap(BufferedReader reader) throws IOException {
+		int width = -1;
+		int height = -1;
+		int lineNumber = 0;
+		for (String line; (line = reader.readLine()) != null;) {
+			lineNumber++;
+			String[] fields = line.trim().split("\\s+");
+			if (fields[0].equals("map")) {
+				break;
+			} else if (fields[0].equals("height") && fields.length == 2) {
+				height = parseInt(fields[1], lineNumber);
+			} else if (fields[0].equals("width") && fields.length == 2) {
+				width = parseInt(fields[1], lineNumber);
+			}
+		}
+		if (width <= 0 || height <= 0) {
+			throw new IOException("missing map size");
+		}
+		MapData map = new MapData(width, height);
+		for (int y = 0; y < height; y++) {
+			String line = reader.readLine();
+			lineNumber++;
+			if (line == null || line.length() < width) {
+				throw new IOException("line " + lineNumber + ": row " + y
+						+ " too short");
+			}
+			for (int x = 0; x < width; x++) {
+				if (!isPassable(line.charAt(x))) {
+					map.addWall(x, y);
+				}
+			}
+		}
+		return map;
+	}
+
+	private static boolean isPassable(char c) {
+		return c == '.' || c == 'G' || c == 'S';
+	}
+
+	public static List<Scenario> readScenarios(File file) throws IOException {
+		BufferedReader reader = open(file);
+		try {
+			return readScenarios(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	public static List<Scenario> readScenarios(BufferedReader reader)
+			throws IOException {
+		List<Scenario> scenarios = new ArrayList<Scenario>();
+		int lineNumber = 0;
+		for (String line; (line = reader.readLine()) != null;) {
+			lineNumber++;
+			if (line.trim().isEmpty() || line.startsWith("version")) {
+				continue;
+			}
+			String[] fields = line.split("\t");
+			if (fields.length < 9) {
+				throw new IOException("line " + lineNumber
+						+ ": expected 9 fields");
+			}
+			try {
+				scenarios.add(new Scenario(Integer.parseInt(fields[0]),
+						fields[1], new PathQuery(Integer.parseInt(fields[4]),
+								Integer.parseInt(fields[5]), Integer
+										.parseInt(fields[6]), Integer
+										.parseInt(fields[7])), Double
+								.parseDouble(fields[8].trim())));
+			} catch (NumberFormatException e) {
+				throw new IOException("line " + lineNumber + ": "
+						+ e.getMessage());
+			}
+		}
+		return scenarios;
+	}
+
+	private static int parseInt(String s, int lineNumber) throws IOException {
+		try {
+			return Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			throw new IOException("line " + lineNumber + ": " + e.getMessage());
+		}
+	}
+
+	private static BufferedReader open(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(new FileInputStream(
+				file), "US-ASCII"));
+	}
+
+}
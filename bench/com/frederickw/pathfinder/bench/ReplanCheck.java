@@ -0,0 +1,174 @@
+package com.frederickw.pathfinder.bench;
+
+import java.util.Random;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.algorithm.DStarLite;
+import com.frederickw.pathfinder.algorithm.Dijkstra;
+import com.frederickw.pathfinder.struct.BitGrid;
+
+/**
+ * Checks that {@link DStarLite} replans correctly. One instance is kept
+ * across a long run of random wall edits and occasional new targets, and
+ * every answer is compared with that of a fresh {@link Dijkstra} on the same
+ * map. Each seed is run twice, once with the source fixed and once with it
+ * moving along the path, and gives the same runs every time. For example:
+ *
+ * <pre>
+ * java -cp out com.frederickw.pathfinder.bench.ReplanCheck -n 5000 1 2 3
+ * </pre>
+ *
+ * Options: {@code -n} the searches per seed (default 2400), {@code -z} the
+ * side of the map (default 128). Exits with status 1 if any answer differs.
+ */
+public final class ReplanCheck {
+
+	private static final double DENSITY = 0.25;
+	private static final double TOLERANCE = 1e-9;
+
+	private ReplanCheck() {
+	}
+
+	public static void main(String[] args) {
+		int searches = 2400;
+		int size = 128;
+		int first = 0;
+		for (; first < args.length && args[first].startsWith("-"); first++) {
+			if (args[first].equals("-n")) {
+				searches = Integer.parseInt(args[++first]);
+			} else if (args[first].equals("-z")) {
+				size = Integer.parseInt(args[++first]);
+			} else {
+				throw new IllegalArgumentException("unknown option "
+						+ args[first]);
+			}
+		}
+		long[] seeds = { 1, 2, 3, 4 };
+		if (first < args.length) {
+			seeds = new long[args.length - first];
+			for (int i = 0; i < seeds.length; i++) {
+				seeds[i] = Long.parseLong(args[first + i]);
+			}
+		}
+		int failures = 0;
+		for (long seed : seeds) {
+			for (boolean moving : new boolean[] { false, true }) {
+				int failed = run(seed, size, searches, moving);
+				System.out.printf("seed %d, %s source: %d searches, "
+						+ "%d wrong%n", seed, moving ? "moving" : "fixed",
+						searches, failed);
+				failures += failed;
+			}
+		}
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/** Returns the number of searches that gave a wrong answer. */
+	public static int run(long seed, int size, int searches,
+			boolean moving) {
+		Random random = new Random(seed);
+		BitGrid walls = new BitGrid(size, size);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				if (random.nextDouble() < DENSITY) {
+					walls.set(x, y);
+				}
+			}
+		}
+		int[] source = openCell(walls, size, random);
+		int[] target = openCell(walls, size, random);
+		DStarLite dstar = new DStarLite();
+		Dijkstra fresh = new Dijkstra();
+		int failed = 0;
+		for (int i = 0; i < searches; i++) {
+			edit(walls, size, random, source, target);
+			if (random.nextInt(50) == 0) {
+				target = openCell(walls, size, random);
+			}
+			GridMap map = new GridMap(size, size, walls.toLongArray(size,
+					size));
+			PathQuery query = new PathQuery(source[0], source[1], target[0],
+					target[1]);
+			PathResult expected = fresh.solve(map, query);
+			PathResult actual = dstar.solve(map, query);
+			String error = compare(map, query, expected, actual);
+			if (error != null) {
+				failed++;
+				System.out.printf("seed %d, search %d, %s: %s%n", seed, i,
+						query, error);
+			}
+			// Walk a few steps along the path, as a unit following it would.
+			if (moving && actual.isFound() && actual.getLength() > 1) {
+				int step = Math.min(actual.getLength() - 1,
+						1 + random.nextInt(3));
+				source = new int[] { actual.getX(step), actual.getY(step) };
+			}
+		}
+		return failed;
+	}
+
+	private static String compare(GridMap map, PathQuery query,
+			PathResult expected, PathResult actual) {
+		if (expected.isFound() != actual.isFound()) {
+			return expected.isFound() ? "no path, expected cost "
+					+ expected.getCost() : "path found where none exists";
+		}
+		if (!actual.isFound()) {
+			return null;
+		}
+		if (Math.abs(expected.getCost() - actual.getCost()) > TOLERANCE) {
+			return "cost " + actual.getCost() + ", expected "
+					+ expected.getCost();
+		}
+		if (actual.getX(0) != query.sourceX || actual.getY(0) != query.sourceY
+				|| actual.getX(actual.getLength() - 1) != query.targetX
+				|| actual.getY(actual.getLength() - 1) != query.targetY) {
+			return "path does not join the source to the target";
+		}
+		for (int i = 1; i < actual.getLength(); i++) {
+			int x = actual.getX(i);
+			int y = actual.getY(i);
+			int px = actual.getX(i - 1);
+			int py = actual.getY(i - 1);
+			if (Math.max(Math.abs(x - px), Math.abs(y - py)) != 1
+					|| map.isWall(x, y) || map.isWall(px, y)
+					|| map.isWall(x, py)) {
+				return "invalid step " + i + " to (" + x + ", " + y + ")";
+			}
+		}
+		return null;
+	}
+
+	// Toggles a few cells around a random spot, never the ends of the query.
+	private static void edit(BitGrid walls, int size, Random random,
+			int[] source, int[] target) {
+		int cx = random.nextInt(size);
+		int cy = random.nextInt(size);
+		for (int k = 0; k < 4; k++) {
+			int x = Math.min(size - 1, Math.max(0, cx + random.nextInt(5) - 2));
+			int y = Math.min(size - 1, Math.max(0, cy + random.nextInt(5) - 2));
+			if ((x == source[0] && y == source[1])
+					|| (x == target[0] && y == target[1])) {
+				continue;
+			}
+			if (!walls.clear(x, y)) {
+				walls.set(x, y);
+			}
+		}
+	}
+
+	private static int[] openCell(BitGrid walls, int size, Random random) {
+		for (;;) {
+			int x = random.nextInt(size);
+			int y = random.nextInt(size);
+			if (!walls.get(x, y)) {
+				return new int[] { x, y };
+			}
+		}
+	}
+
+}
@@ -0,0 +1,299 @@
+package com.frederickw.pathfinder.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.frederickw.pathfinder.Algorithm;
+import com.frederickw.pathfinder.AlgorithmFactory;
+import com.frederickw.pathfinder.ChunkedWalls;
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.MapFile;
+import com.frederickw.pathfinder.MetricsExporter;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.bench.MovingAi.Scenario;
+
+/**
+ * Runs the algorithms over Moving AI scenario files and checks every path
+ * against the reference length. For each file and algorithm it reports how
+ * many paths were optimal, longer, or missing or shorter (failed), the
+ * worst ratio to the optimum, the latency percentiles of a query, the mean
+ * expansions and allocation per query, and the heap in use afterwards. For
+ * example:
+ *
+ * <pre>
+ * java -Xms1g -Xmx1g -cp out com.frederickw.pathfinder.bench.ScenarioRunner -a 'astar|jps' -n 1000 maps/arena.map.scen
+ * </pre>
+ *
+ * Options: {@code -a} a regular expression that algorithm names must match
+ * (default all, as named in {@link Algorithms}), {@code -m} the directory
+ * of the maps (default that of each scenario file), {@code -n} the most
+ * scenarios to run from each file, {@code -w} queries run unmeasured per
+ * map and algorithm before measuring (default 10), {@code -j} a file to
+ * write the metrics of every search to as JSON lines, taken in a separate
+ * pass so they do not slow the measured one.
+ * <p>
+ * Maps whose names end in {@code .pfm} are memory-mapped {@link MapFile}s
+ * rather than Moving AI maps. With {@code -c} they must be in the chunked
+ * layout instead and are loaded a chunk at a time, holding at most the
+ * given number of chunks; the chunk hits and misses of each map are
+ * reported at the end.
+ */
+public final class ScenarioRunner {
+
+	// Reference lengths are printed to eight decimal places.
+	private static final double TOLERANCE = 1e-4;
+
+	private Pattern filter = Pattern.compile(".*");
+	private File mapDirectory = null;
+	private int limit = Integer.MAX_VALUE;
+	private int warmups = 10;
+	private File metricsFile = null;
+	private int chunks = 0;
+	private final Map<String, GridMap> maps = new HashMap<String, GridMap>();
+	private final Map<String, ChunkedWalls> chunked =
+			new LinkedHashMap<String, ChunkedWalls>();
+
+	public static void main(String[] args) throws IOException {
+		ScenarioRunner runner = new ScenarioRunner();
+		int first = 0;
+		for (; first < args.length && args[first].startsWith("-"); first++) {
+			if (args[first].equals("-a")) {
+				runner.filter = Pattern.compile(args[++first]);
+			} else if (args[first].equals("-m")) {
+				runner.mapDirectory = new File(args[++first]);
+			} else if (args[first].equals("-n")) {
+				runner.limit = Integer.parseInt(args[++first]);
+			} else if (args[first].equals("-w")) {
+				runner.warmups = Integer.parseInt(args[++first]);
+			} else if (args[first].equals("-j")) {
+				runner.metricsFile = new File(args[++first]);
+			} else if (args[first].equals("-c")) {
+				runner.chunks = Integer.parseInt(args[++first]);
+			} else {
+				throw new IllegalArgumentException("unknown option "
+						+ args[first]);
+			}
+		}
+		if (first == args.length) {
+			System.err.println("usage: ScenarioRunner [-a regex] [-m dir] "
+					+ "[-n count] [-w count] [-j file] [-c count] scen...");
+			System.exit(2);
+		}
+		runner.run(Arrays.asList(args).subList(first, args.length));
+	}
+
+	public void run(List<String> scenarioFiles) throws IOException {
+		System.out.printf("%-24s %-16s %7s %7s %6s %6s %8s %9s %9s %9s %9s"
+				+ " %11s %11s %8s%n", "Scenarios", "Algorithm", "queries",
+				"optimal", "longer", "failed", "worst", "p50 us", "p90 us",
+				"p99 us", "max us", "exp/query", "alloc B/q", "heap MB");
+		Map<String, Stats> totals = new LinkedHashMap<String, Stats>();
+		Writer metrics = metricsFile == null ? null : new OutputStreamWriter(
+				new FileOutputStream(metricsFile), "UTF-8");
+		try {
+			for (String path : scenarioFiles) {
+				File file = new File(path);
+				List<Scenario> scenarios = MovingAi.readScenarios(file);
+				if (scenarios.size() > limit) {
+					scenarios = scenarios.subList(0, limit);
+				}
+				if (scenarios.isEmpty()) {
+					continue;
+				}
+				for (Map.Entry<String, AlgorithmFactory> entry : Algorithms
+						.forMap(loadMap(file, scenarios.get(0))).entrySet()) {
+					if (!filter.matcher(entry.getKey()).matches()) {
+						continue;
+					}
+					Stats stats = run(file, scenarios, entry.getKey(), metrics);
+					print(file.getName(), entry.getKey(), stats);
+					Stats total = totals.get(entry.getKey());
+					if (total == null) {
+						totals.put(entry.getKey(), stats);
+					} else {
+						total.add(stats);
+					}
+				}
+			}
+		} finally {
+			if (metrics != null) {
+				metrics.close();
+			}
+			for (ChunkedWalls walls : chunked.values()) {
+				walls.close();
+			}
+		}
+		if (scenarioFiles.size() > 1) {
+			for (Map.Entry<String, Stats> entry : totals.entrySet()) {
+				print("all", entry.getKey(), entry.getValue());
+			}
+		}
+		for (Map.Entry<String, ChunkedWalls> entry : chunked.entrySet()) {
+			ChunkedWalls walls = entry.getValue();
+			System.out.printf("%s: %d chunk hits, %d misses (%.4f%% hit),"
+					+ " %d evictions, %d of %d chunks held%n", entry.getKey(),
+					walls.getHits(), walls.getMisses(),
+					walls.getHitRate() * 100, walls.getEvictions(),
+					walls.getResident(), walls.getChunkCount());
+		}
+	}
+
+	// A scenario file may name several maps; the algorithm is created once
+	// per map.
+	private Stats run(File file, List<Scenario> scenarios, String name,
+			Writer metrics) throws IOException {
+		Map<String, Algorithm> algorithms = new HashMap<String, Algorithm>();
+		for (int i = 0; i < Math.min(warmups, scenarios.size()); i++) {
+			Scenario scenario = scenarios.get(i);
+			algorithm(algorithms, file, scenario, name).solve(
+					loadMap(file, scenario), scenario.query);
+		}
+		Stats stats = new Stats(scenarios.size());
+		long bytes = BenchmarkRunner.allocatedBytes();
+		for (Scenario scenario : scenarios) {
+			GridMap map = loadMap(file, scenario);
+			Algorithm algorithm = algorithm(algorithms, file, scenario, name);
+			long start = System.nanoTime();
+			PathResult result = algorithm.solve(map, scenario.query);
+			stats.record(System.nanoTime() - start, result, scenario.optimal);
+		}
+		bytes = BenchmarkRunner.allocatedBytes() - bytes;
+		stats.allocated = bytes < 0 ? -1 : bytes;
+		Runtime runtime = Runtime.getRuntime();
+		stats.heap = runtime.totalMemory() - runtime.freeMemory();
+		if (metrics != null) {
+			MetricsExporter exporter = new MetricsExporter(metrics);
+			for (Algorithm algorithm : algorithms.values()) {
+				algorithm.setListener(exporter);
+			}
+			for (Scenario scenario : scenarios) {
+				algorithm(algorithms, file, scenario, name).solve(
+						loadMap(file, scenario), scenario.query);
+			}
+		}
+		return stats;
+	}
+
+	private Algorithm algorithm(Map<String, Algorithm> algorithms, File file,
+			Scenario scenario, String name) throws IOException {
+		Algorithm algorithm = algorithms.get(scenario.map);
+		if (algorithm == null) {
+			algorithm = Algorithms.forMap(loadMap(file, scenario)).get(name)
+					.create();
+			algorithms.put(scenario.map, algorithm);
+		}
+		return algorithm;
+	}
+
+	private GridMap loadMap(File scenarioFile, Scenario scenario)
+			throws IOException {
+		GridMap map = maps.get(scenario.map);
+		if (map == null) {
+			File directory = mapDirectory != null ? mapDirectory
+					: scenarioFile.getAbsoluteFile().getParentFile();
+			File file = new File(directory, scenario.map);
+			if (!file.isFile()) {
+				file = new File(directory, new File(scenario.map).getName());
+			}
+			if (!file.getName().endsWith(".pfm")) {
+				map = MovingAi.readMap(file).toGridMap();
+			} else if (chunks > 0) {
+				ChunkedWalls walls = ChunkedWalls.open(file, chunks);
+				chunked.put(scenario.map, walls);
+				map = walls.getMap();
+			} else {
+				map = MapFile.load(file);
+			}
+			maps.put(scenario.map, map);
+		}
+		return map;
+	}
+
+	private static void print(String scenarios, String algorithm, Stats stats) {
+		System.out.printf("%-24s %-16s %7d %7d %6d %6d %8.4f %9.1f %9.1f"
+				+ " %9.1f %9.1f %11.1f %11.1f %8.1f%n", scenarios, algorithm,
+				stats.count, stats.optimal, stats.longer, stats.failed,
+				stats.worst, stats.percentile(0.50) / 1e3,
+				stats.percentile(0.90) / 1e3, stats.percentile(0.99) / 1e3,
+				stats.percentile(1.0) / 1e3, (double) stats.expansions
+						/ stats.count, stats.allocated < 0 ? Double.NaN
+						: (double) stats.allocated / stats.count,
+				stats.heap / 1048576.0);
+	}
+
+	private static final class Stats {
+
+		long[] latencies;
+		int count = 0;
+		int optimal = 0;
+		int longer = 0;
+		int failed = 0;
+		// The largest ratio of a path found to the reference length.
+		double worst = 1.0;
+		long expansions = 0;
+		long allocated = 0;
+		long heap = 0;
+
+		Stats(int capacity) {
+			latencies = new long[capacity];
+		}
+
+		void record(long nanos, PathResult result, double reference) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2 + 1);
+			}
+			latencies[count++] = nanos;
+			expansions += result.getExpansions();
+			// A path shorter than the reference means the map was read
+			// differently from the benchmark's rules.
+			if (!result.isFound()
+					|| result.getCost() < reference - TOLERANCE) {
+				failed++;
+			} else if (result.getCost() <= reference + TOLERANCE) {
+				optimal++;
+			} else {
+				longer++;
+				if (reference > 0) {
+					worst = Math.max(worst, result.getCost() / reference);
+				}
+			}
+		}
+
+		void add(Stats other) {
+			latencies = Arrays.copyOf(latencies, count + other.count);
+			System.arraycopy(other.latencies, 0, latencies, count,
+					other.count);
+			count += other.count;
+			optimal += other.optimal;
+			longer += other.longer;
+			failed += other.failed;
+			worst = Math.max(worst, other.worst);
+			expansions += other.expansions;
+			allocated = allocated < 0 || other.allocated < 0 ? -1 : allocated
+					+ other.allocated;
+			heap = Math.max(heap, other.heap);
+		}
+
+		// Nearest-rank percentile.
+		double percentile(double p) {
+			if (count == 0) {
+				return Double.NaN;
+			}
+			long[] sorted = Arrays.copyOf(latencies, count);
+			Arrays.sort(sorted);
+			int rank = (int) Math.ceil(p * count);
+			return sorted[Math.max(0, Math.min(count, rank) - 1)];
+		}
+
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.frederickw.pathfinder.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.frederickw.pathfinder.Algorithm;
+import com.frederickw.pathfinder.AlgorithmFactory;
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.algorithm.AStar;
+import com.frederickw.pathfinder.algorithm.DStarLite;
+import com.frederickw.pathfinder.algorithm.FlowField;
+
+/**
+ * Full searches, run to completion through {@link Algorithm#solve}, over
+ * open, random and maze maps of several sizes. One operation is one query.
+ * <p>
+ * The replan workloads repeat one query on a random map while a few walls
+ * change between searches; one operation is one search after an edit. The
+ * flow workloads route agents from random cells to one shared target,
+ * either with one A* search each or by building a {@link FlowField} and
+ * reading every path from it; one operation is one agent.
+ */
+public final class SearchBenchmarks {
+
+	private static final int[] SIZES = { 64, 256, 1024 };
+	private static final long SEED = 0x5eed;
+
+	private SearchBenchmarks() {
+	}
+
+	public static List<Workload> create() {
+		List<Workload> workloads = new ArrayList<Workload>();
+		for (int size : SIZES) {
+			addAll(workloads, "open", size, Maps.open(size));
+			addAll(workloads, "random", size, Maps.random(size, 0.2, SEED));
+			addAll(workloads, "maze", size, Maps.maze(size | 1, SEED));
+		}
+		for (int size : SIZES) {
+			addReplans(workloads, size, Maps.random(size, 0.2, SEED));
+		}
+		for (int size : SIZES) {
+			addFlows(workloads, size, Maps.random(size, 0.2, SEED));
+		}
+		return workloads;
+	}
+
+	private static void addFlows(List<Workload> workloads, int size,
+			final GridMap map) {
+		PathQuery[] picks = Maps.queries(map, 65, SEED);
+		final int targetX = picks[0].targetX;
+		final int targetY = picks[0].targetY;
+		final PathQuery[] queries = new PathQuery[picks.length - 1];
+		for (int i = 1; i < picks.length; i++) {
+			queries[i - 1] = new PathQuery(picks[i].sourceX, picks[i].sourceY,
+					targetX, targetY);
+		}
+		String prefix = "flow.random." + size + ".";
+		workloads.add(search(prefix + "astar", map, queries,
+				new AlgorithmFactory() {
+					@Override
+					public Algorithm create() {
+						return new AStar(AStar.EUCLIDEAN_DISTANCE);
+					}
+				}));
+		workloads.add(new Workload(prefix + "field") {
+
+			@Override
+			public int run() {
+				FlowField field = FlowField.build(map, targetX, targetY);
+				for (PathQuery query : queries) {
+					PathResult result = field.getResult(query.sourceX,
+							query.sourceY);
+					sink += result.getLength();
+				}
+				return queries.length;
+			}
+
+		});
+	}
+
+	private static void addReplans(List<Workload> workloads, int size,
+			GridMap map) {
+		PathQuery query = Maps.queries(map, 1, SEED)[0];
+		GridMap[] maps = Maps.edits(map, query, 32, SEED);
+		String prefix = "replan.random." + size + ".";
+		workloads.add(replan(prefix + "astar", maps, query,
+				new AlgorithmFactory() {
+					@Override
+					public Algorithm create() {
+						return new AStar(AStar.EUCLIDEAN_DISTANCE);
+					}
+				}));
+		workloads.add(replan(prefix + "dstar", maps, query,
+				new AlgorithmFactory() {
+					@Override
+					public Algorithm create() {
+						return new DStarLite();
+					}
+				}));
+	}
+
+	private static void addAll(List<Workload> workloads, String kind,
+			int size, GridMap map) {
+		PathQuery[] queries = Maps.queries(map, size >= 1024 ? 4 : 32, SEED);
+		String prefix = "search." + kind + "." + size + ".";
+		for (Map.Entry<String, AlgorithmFactory> entry : Algorithms.forMap(
+				map).entrySet()) {
+			workloads.add(search(prefix + entry.getKey(), map, queries,
+					entry.getValue()));
+		}
+	}
+
+	private static Workload search(String name, final GridMap map,
+			final PathQuery[] queries, final AlgorithmFactory factory) {
+		return new Workload(name) {
+
+			private Algorithm algorithm;
+
+			@Override
+			public void setUp() {
+				algorithm = factory.create();
+			}
+
+			@Override
+			public int run() {
+				for (PathQuery query : queries) {
+					PathResult result = algorithm.solve(map, query);
+					sink += result.getExpansions() + result.getLength();
+				}
+				return queries.length;
+			}
+
+		};
+	}
+
+	private static Workload replan(String name, final GridMap[] maps,
+			final PathQuery query, final AlgorithmFactory factory) {
+		return new Workload(name) {
+
+			private Algorithm algorithm;
+
+			@Override
+			public void setUp() {
+				algorithm = factory.create();
+			}
+
+			@Override
+			public int run() {
+				for (GridMap map : maps) {
+					PathResult result = algorithm.solve(map, query);
+					sink += result.getExpansions() + result.getLength();
+				}
+				return maps.length;
+			}
+
+		};
+	}
+
+}
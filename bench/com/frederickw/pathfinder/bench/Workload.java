@@ -0,0 +1,33 @@
+package com.frederickw.pathfinder.bench;
+
+/**
+ * A single benchmarked operation. {@link #run()} performs a fixed amount of
+ * work and returns how many operations that was, plus anything the JIT must
+ * not be allowed to discard folded into {@link #sink}.
+ */
+public abstract class Workload {
+
+	private final String name;
+
+	protected long sink;
+
+	protected Workload(String name) {
+		this.name = name;
+	}
+
+	public final String getName() {
+		return name;
+	}
+
+	public void setUp() {
+	}
+
+	public abstract int run();
+
+	final long drainSink() {
+		long value = sink;
+		sink = 0;
+		return value;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.frederickw.pathfinder.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.algorithm.AStar;
+import com.frederickw.pathfinder.algorithm.FlowField;
+import com.frederickw.pathfinder.bench.Maps;
+
+/**
+ * Agents routed from random cells of a random map to one shared target,
+ * either with one A* search each or by building a {@link FlowField} and
+ * reading every path from it. One operation is one agent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FlowBenchmark {
+
+	private static final int AGENTS = 64;
+
+	@Param({ "64", "256", "1024" })
+	public int size;
+
+	private GridMap map;
+	private PathQuery[] queries;
+	private int targetX;
+	private int targetY;
+	private final AStar astar = new AStar(AStar.EUCLIDEAN_DISTANCE);
+
+	@Setup
+	public void setUp() {
+		map = Maps.random(size, SearchBenchmark.DENSITY, SearchBenchmark.SEED);
+		PathQuery[] picks = Maps.queries(map, AGENTS + 1,
+				SearchBenchmark.SEED);
+		targetX = picks[0].targetX;
+		targetY = picks[0].targetY;
+		queries = new PathQuery[AGENTS];
+		for (int i = 0; i < AGENTS; i++) {
+			queries[i] = new PathQuery(picks[i + 1].sourceX,
+					picks[i + 1].sourceY, targetX, targetY);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(AGENTS)
+	public void astar(Blackhole blackhole) {
+		for (PathQuery query : queries) {
+			blackhole.consume(astar.solve(map, query));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(AGENTS)
+	public void field(Blackhole blackhole) {
+		FlowField field = FlowField.build(map, targetX, targetY);
+		for (PathQuery query : queries) {
+			blackhole.consume(field.getResult(query.sourceX, query.sourceY));
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.frederickw.pathfinder.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.frederickw.pathfinder.struct.BinaryHeap;
+import com.frederickw.pathfinder.struct.BucketQueue;
+import com.frederickw.pathfinder.struct.IntBinaryHeap;
+
+/**
+ * Microbenchmarks for the priority queues. One operation is one add, poll
+ * or priority update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HeapBenchmark {
+
+	private static final int SIZE = 10000;
+	// resort() is linear, so a resort pass only takes a slice.
+	private static final int RESORTS = SIZE / 10;
+	// Key range of the bucket queue, as for one step of fixed-point A*.
+	private static final int SPAN = 239;
+
+	private static final class Entry implements Comparable<Entry> {
+
+		final int index;
+		double key;
+
+		Entry(int index, double key) {
+			this.index = index;
+			this.key = key;
+		}
+
+		@Override
+		public int compareTo(Entry entry) {
+			return Double.compare(key, entry.key);
+		}
+
+	}
+
+	private Entry[] entries;
+	private int[] order;
+	private final BinaryHeap<Entry> binary = new BinaryHeap<Entry>(SIZE);
+	private final BinaryHeap<Entry> resorted = new BinaryHeap<Entry>(SIZE);
+	private final IntBinaryHeap ints = new IntBinaryHeap(SIZE);
+	private final BucketQueue buckets = new BucketQueue(SPAN);
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(SearchBenchmark.SEED);
+		entries = new Entry[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			entries[i] = new Entry(i, random.nextDouble());
+		}
+		random = new Random(SearchBenchmark.SEED + 1);
+		order = new int[RESORTS];
+		for (int i = 0; i < RESORTS; i++) {
+			order[i] = random.nextInt(SIZE);
+		}
+		for (Entry entry : entries) {
+			resorted.add(entry);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2 * SIZE)
+	public void binaryAddPoll(Blackhole blackhole) {
+		for (Entry entry : entries) {
+			binary.add(entry);
+		}
+		while (!binary.isEmpty()) {
+			blackhole.consume(binary.poll());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RESORTS)
+	public void binaryResort(Blackhole blackhole) {
+		for (int i : order) {
+			Entry entry = entries[i];
+			entry.key -= 1e-9;
+			blackhole.consume(resorted.resort(entry));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2 * SIZE)
+	public void intAddPoll(Blackhole blackhole) {
+		for (Entry entry : entries) {
+			ints.add(entry.index, entry.key);
+		}
+		while (!ints.isEmpty()) {
+			blackhole.consume(ints.poll());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2 * SIZE)
+	public void bucketAddPoll(Blackhole blackhole) {
+		// Keys start over, so forget the last one polled.
+		buckets.clear();
+		for (Entry entry : entries) {
+			buckets.add(entry.index, (int) (entry.key * SPAN));
+		}
+		while (!buckets.isEmpty()) {
+			blackhole.consume(buckets.poll());
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.frederickw.pathfinder.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.frederickw.pathfinder.Algorithm;
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.algorithm.AStar;
+import com.frederickw.pathfinder.algorithm.DStarLite;
+import com.frederickw.pathfinder.bench.Maps;
+
+/**
+ * One query repeated on a random map while a few walls change between
+ * searches, answered from scratch by A* or incrementally by D* Lite. One
+ * operation is one search after an edit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReplanBenchmark {
+
+	private static final int EDITS = 32;
+
+	@Param({ "64", "256", "1024" })
+	public int size;
+
+	@Param({ "astar", "dstar" })
+	public String algorithm;
+
+	private GridMap[] maps;
+	private PathQuery query;
+	private Algorithm search;
+	private int next = 0;
+
+	@Setup
+	public void setUp() {
+		GridMap map = Maps.random(size, SearchBenchmark.DENSITY,
+				SearchBenchmark.SEED);
+		query = Maps.queries(map, 1, SearchBenchmark.SEED)[0];
+		maps = Maps.edits(map, query, EDITS, SearchBenchmark.SEED);
+		if (algorithm.equals("astar")) {
+			search = new AStar(AStar.EUCLIDEAN_DISTANCE);
+		} else if (algorithm.equals("dstar")) {
+			search = new DStarLite();
+		} else {
+			throw new IllegalArgumentException("unknown algorithm "
+					+ algorithm);
+		}
+	}
+
+	@Benchmark
+	public PathResult replan() {
+		GridMap map = maps[next];
+		next = next + 1 == maps.length ? 0 : next + 1;
+		return search.solve(map, query);
+	}
+
+}
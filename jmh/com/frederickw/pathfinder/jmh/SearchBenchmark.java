@@ -0,0 +1,85 @@
+package com.frederickw.pathfinder.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.frederickw.pathfinder.Algorithm;
+import com.frederickw.pathfinder.AlgorithmFactory;
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.bench.Algorithms;
+import com.frederickw.pathfinder.bench.Maps;
+
+/**
+ * Full searches, run to completion through {@link Algorithm#solve}, over
+ * open, random and maze maps of several sizes. One operation is one query;
+ * each invocation takes the next of a fixed set of seeded queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearchBenchmark {
+
+	static final long SEED = 0x5eed;
+	static final double DENSITY = 0.2;
+
+	@Param({ "open", "random", "maze" })
+	public String kind;
+
+	@Param({ "64", "256", "1024" })
+	public int size;
+
+	// The names of Algorithms.forMap.
+	@Param({ "astar", "dijkstra", "astar.octile", "astar.alt",
+			"astar.weighted", "ara", "astar.fixed", "dijkstra.fixed", "bbfs",
+			"bbfs.parallel", "jps", "hpa", "dstar" })
+	public String algorithm;
+
+	private GridMap map;
+	private PathQuery[] queries;
+	private Algorithm search;
+	private int next = 0;
+
+	@Setup
+	public void setUp() {
+		if (kind.equals("open")) {
+			map = Maps.open(size);
+		} else if (kind.equals("random")) {
+			map = Maps.random(size, DENSITY, SEED);
+		} else if (kind.equals("maze")) {
+			map = Maps.maze(size | 1, SEED);
+		} else {
+			throw new IllegalArgumentException("unknown map kind " + kind);
+		}
+		queries = Maps.queries(map, size >= 1024 ? 4 : 32, SEED);
+		AlgorithmFactory factory = Algorithms.forMap(map).get(algorithm);
+		if (factory == null) {
+			throw new IllegalArgumentException("unknown algorithm "
+					+ algorithm);
+		}
+		search = factory.create();
+	}
+
+	@Benchmark
+	public PathResult search() {
+		PathQuery query = queries[next];
+		next = next + 1 == queries.length ? 0 : next + 1;
+		return search.solve(map, query);
+	}
+
+}
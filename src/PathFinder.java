@@ -17,11 +17,13 @@ import java.awt.event.ItemListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.JApplet;
 import javax.swing.JButton;
@@ -41,29 +43,76 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import com.frederickw.pathfinder.Algorithm;
+import com.frederickw.pathfinder.CellListener;
+import com.frederickw.pathfinder.GridMap;
 import com.frederickw.pathfinder.MapData;
 import com.frederickw.pathfinder.Node;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.SearchListener;
+import com.frederickw.pathfinder.SearchMetrics;
+import com.frederickw.pathfinder.algorithm.ARAStar;
 import com.frederickw.pathfinder.algorithm.AStar;
 import com.frederickw.pathfinder.algorithm.BBFS;
+import com.frederickw.pathfinder.algorithm.DStarLite;
 import com.frederickw.pathfinder.algorithm.Dijkstra;
+import com.frederickw.pathfinder.algorithm.HPAStar;
+import com.frederickw.pathfinder.algorithm.JPS;
 
 public class PathFinder extends JApplet {
 
 	private static final long serialVersionUID = -7472533349360456696L;
 
-	private static final Map<String, Algorithm> ALGORITHMS = new HashMap<String, Algorithm>();
 	public static final String A_STAR_MANHATTAN = "A-Star (Manhattan Distance)";
 	public static final String A_STAR_CHEBYSHEV = "A-Star (Chebyshev Distance)";
 	public static final String A_STAR_EUCLIDEAN = "A-Star (Euclidean Distance)";
+	public static final String A_STAR_OCTILE = "A-Star (Octile Distance)";
 	public static final String DIJKSTRA = "Dijkstra";
 	public static final String BIDIRECTIONAL_BREADTH_FIRST_SEARCH = "Bidirectional Breadth-First Search";
+	public static final String JUMP_POINT_SEARCH = "Jump Point Search";
+	public static final String HIERARCHICAL_A_STAR = "Hierarchical A*";
+	public static final String D_STAR_LITE = "D* Lite";
+	public static final String WEIGHTED_A_STAR = "Weighted A-Star (Euclidean Distance x 2)";
+	public static final String ANYTIME_A_STAR = "Anytime A-Star (ARA*)";
 
-	static {
-		ALGORITHMS.put(A_STAR_MANHATTAN, new AStar(AStar.MANHATTAN_DISTANCE));
-		ALGORITHMS.put(A_STAR_CHEBYSHEV, new AStar(AStar.CHEBYSHEV_DISTANCE));
-		ALGORITHMS.put(A_STAR_EUCLIDEAN, new AStar(AStar.EUCLIDEAN_DISTANCE));
-		ALGORITHMS.put(DIJKSTRA, new Dijkstra());
-		ALGORITHMS.put(BIDIRECTIONAL_BREADTH_FIRST_SEARCH, new BBFS());
+	private static final long SECOND = 1000000000L;
+	private static final long FRAME_MILLIS = 16;
+	private static final int SPEED_MAX = 100;
+	// Time spent stepping per frame at full speed.
+	private static final long FRAME_BUDGET = 8000000L;
+
+	private final Map<String, Algorithm> algorithms = new HashMap<String, Algorithm>();
+
+	// The search being stepped, and when it started, for the live rate.
+	private volatile SearchMetrics metrics = null;
+	private volatile long metricsStart = 0;
+
+	private final SearchListener monitor = new SearchListener() {
+		@Override
+		public void searchStarted(SearchMetrics m) {
+			metrics = m;
+			metricsStart = System.nanoTime();
+		}
+
+		@Override
+		public void searchFinished(SearchMetrics m) {
+		}
+	};
+
+	{
+		algorithms.put(A_STAR_MANHATTAN, new AStar(AStar.MANHATTAN_DISTANCE));
+		algorithms.put(A_STAR_CHEBYSHEV, new AStar(AStar.CHEBYSHEV_DISTANCE));
+		algorithms.put(A_STAR_EUCLIDEAN, new AStar(AStar.EUCLIDEAN_DISTANCE));
+		algorithms.put(A_STAR_OCTILE, new AStar(AStar.OCTILE_DISTANCE));
+		algorithms.put(DIJKSTRA, new Dijkstra());
+		algorithms.put(BIDIRECTIONAL_BREADTH_FIRST_SEARCH, new BBFS());
+		algorithms.put(JUMP_POINT_SEARCH, new JPS());
+		algorithms.put(HIERARCHICAL_A_STAR, new HPAStar());
+		algorithms.put(D_STAR_LITE, new DStarLite());
+		algorithms.put(WEIGHTED_A_STAR, new AStar(AStar.EUCLIDEAN_DISTANCE, 2.0));
+		algorithms.put(ANYTIME_A_STAR, new ARAStar(AStar.EUCLIDEAN_DISTANCE));
+		for (Algorithm algorithm : algorithms.values()) {
+			algorithm.setListener(monitor);
+		}
 	}
 
 	private JSpinner spnrWidth;
@@ -75,12 +124,22 @@ public class PathFinder extends JApplet {
 	private JButton btnStart;
 	private JButton btnReset;
 
+	// The loop thread alone steps, resets and reads the algorithms. The EDT
+	// hands it work through the command queue and may only cancel a search.
 	private Thread loop;
+	private final Queue<Runnable> commands = new ConcurrentLinkedQueue<Runnable>();
 	private boolean editing = true;
-	private boolean running = false;
-	private int iterations = 0;
-
-	private Algorithm algorithm = ALGORITHMS.get(A_STAR_MANHATTAN);
+	private volatile boolean running = false;
+	private volatile int speed = 20;
+	private volatile long iterations = 0;
+	private final AtomicBoolean repaintPending = new AtomicBoolean();
+	// Searches started on the EDT, to ignore the end of an earlier one.
+	private int searches = 0;
+	// The search being stepped, numbered as above, or 0. Loop thread only.
+	private int started = 0;
+
+	private final MapData map = new MapData();
+	private volatile Algorithm algorithm = algorithms.get(A_STAR_MANHATTAN);
 
 	private enum Clicked {
 		SOURCE, TARGET, DELETE_WALL, ADD_WALL;
@@ -106,14 +165,23 @@ public class PathFinder extends JApplet {
 		contentPane.setLayout(gbl_contentPane);
 
 		JComboBox<String> cmbbxAlgorithm = new JComboBox<String>(new String[] {
-				A_STAR_MANHATTAN, A_STAR_CHEBYSHEV, A_STAR_EUCLIDEAN, DIJKSTRA,
-				BIDIRECTIONAL_BREADTH_FIRST_SEARCH });
+				A_STAR_MANHATTAN, A_STAR_CHEBYSHEV, A_STAR_EUCLIDEAN,
+				A_STAR_OCTILE, DIJKSTRA,
+				BIDIRECTIONAL_BREADTH_FIRST_SEARCH, JUMP_POINT_SEARCH,
+				HIERARCHICAL_A_STAR, D_STAR_LITE, WEIGHTED_A_STAR,
+				ANYTIME_A_STAR });
 		cmbbxAlgorithm.addItemListener(new ItemListener() {
 			@Override
 			public void itemStateChanged(ItemEvent e) {
 				if (e.getStateChange() == ItemEvent.SELECTED) {
 					resetAlgorithm();
-					algorithm = ALGORITHMS.get(e.getItem());
+					final Algorithm selected = algorithms.get(e.getItem());
+					submit(new Runnable() {
+						@Override
+						public void run() {
+							algorithm = selected;
+						}
+					});
 				}
 			}
 		});
@@ -145,7 +213,7 @@ public class PathFinder extends JApplet {
 		spnrWidth.addChangeListener(new ChangeListener() {
 			@Override
 			public void stateChanged(ChangeEvent e) {
-				MapData.width = (Integer) spnrWidth.getValue();
+				map.setWidth((Integer) spnrWidth.getValue());
 				display.updateSize();
 			}
 		});
@@ -166,7 +234,7 @@ public class PathFinder extends JApplet {
 		spnrHeight.addChangeListener(new ChangeListener() {
 			@Override
 			public void stateChanged(ChangeEvent e) {
-				MapData.height = (Integer) spnrHeight.getValue();
+				map.setHeight((Integer) spnrHeight.getValue());
 				display.updateSize();
 			}
 		});
@@ -177,6 +245,9 @@ public class PathFinder extends JApplet {
 		contentPane.add(spnrHeight, gbc_spnrHeight);
 
 		display = new Display();
+		for (Algorithm algorithm : algorithms.values()) {
+			algorithm.setCellListener(display);
+		}
 		JScrollPane scrollPane = new JScrollPane(display);
 		GridBagConstraints gbc_scrollPane = new GridBagConstraints();
 		gbc_scrollPane.gridwidth = 6;
@@ -209,7 +280,7 @@ public class PathFinder extends JApplet {
 		btnClearWalls.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				MapData.walls.clear();
+				map.clearWalls();
 				display.repaint();
 			}
 		});
@@ -229,15 +300,15 @@ public class PathFinder extends JApplet {
 		gbc_lblSpeed.gridy = 4;
 		contentPane.add(lblSpeed, gbc_lblSpeed);
 
-		speedSlider = new JSlider();
+		speedSlider = new JSlider(0, SPEED_MAX, speed);
 		speedSlider.setPaintLabels(true);
 		speedSlider.setMinorTickSpacing(5);
 		speedSlider.setMajorTickSpacing(10);
-		speedSlider.setValue(20);
 		speedSlider.setPaintTicks(true);
 		speedSlider.addChangeListener(new ChangeListener() {
 			@Override
 			public void stateChanged(ChangeEvent e) {
+				speed = speedSlider.getValue();
 				loop.interrupt();
 			}
 		});
@@ -254,17 +325,24 @@ public class PathFinder extends JApplet {
 			public void actionPerformed(ActionEvent e) {
 				String text = btnStart.getText();
 				if (text.equals("Start")) {
-					if (MapData.source.equals(MapData.target)) {
+					if (map.getSource().equals(map.getTarget())) {
 						JOptionPane.showMessageDialog(PathFinder.this,
 								"Source cannot be the same as the target",
 								"Error", JOptionPane.ERROR_MESSAGE);
 						return;
 					}
-					synchronized (algorithm) {
-						algorithm.init();
-						editing = false;
-						running = true;
-					}
+					final GridMap grid = map.toGridMap();
+					final PathQuery query = map.toQuery();
+					final int search = ++searches;
+					submit(new Runnable() {
+						@Override
+						public void run() {
+							algorithm.init(grid, query);
+							started = search;
+						}
+					});
+					editing = false;
+					running = true;
 					btnClearWalls.setEnabled(false);
 					btnReset.setEnabled(true);
 					btnStart.setText("Pause");
@@ -304,12 +382,18 @@ public class PathFinder extends JApplet {
 	}
 
 	private void resetAlgorithm() {
-		synchronized (algorithm) {
-			editing = true;
-			running = false;
-			algorithm.reset();
-		}
-		display.repaint();
+		// Stops a frame of stepping early.
+		algorithm.cancel();
+		editing = true;
+		running = false;
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				started = 0;
+				algorithm.reset();
+				display.cellsCleared();
+			}
+		});
 		btnClearWalls.setEnabled(true);
 		btnReset.setEnabled(false);
 		btnStart.setEnabled(true);
@@ -318,58 +402,137 @@ public class PathFinder extends JApplet {
 		updateIterations();
 	}
 
+	/** Runs a command on the loop thread, before its next frame. */
+	private void submit(Runnable command) {
+		commands.add(command);
+		if (loop != null) {
+			loop.interrupt();
+		}
+	}
+
+	// Steps owed since the last frame are made together, followed by one
+	// published frame and one repaint. The slider's maximum steps for a
+	// slice of each frame instead, as fast as the search goes.
 	private void runLoop() {
 		loop = new Thread() {
 			@Override
 			public void run() {
+				long last = System.nanoTime();
+				long credit = 0;
 				for (;;) {
-					synchronized (algorithm) {
-						if (running) {
-							if (algorithm.step()) {
-								running = false;
-								btnStart.setEnabled(false);
+					boolean changed = false;
+					for (Runnable command; (command = commands.poll()) != null;) {
+						command.run();
+						changed = true;
+					}
+					final long now = System.nanoTime();
+					final int speed = PathFinder.this.speed;
+					// Owed steps, in billionths; a late frame catches up by
+					// at most one step.
+					credit = Math.min(credit + (now - last) * speed,
+							2 * SECOND);
+					last = now;
+					if (running && started != 0) {
+						boolean stepped = false;
+						boolean done = false;
+						if (speed == SPEED_MAX) {
+							done = algorithm.stepUntil(now + FRAME_BUDGET);
+							stepped = true;
+						} else if (credit >= SECOND) {
+							final int steps = (int) (credit / SECOND);
+							done = algorithm.step(steps);
+							credit -= steps * SECOND;
+							stepped = true;
+						}
+						if (stepped) {
+							final SearchMetrics m = metrics;
+							if (m != null) {
+								iterations = m.getSteps();
 							}
-							iterations++;
-							SwingUtilities.invokeLater(new Runnable() {
-								@Override
-								public void run() {
-									display.repaint();
-									updateIterations();
-								}
-							});
+							changed = true;
+						}
+						if (done) {
+							finished(started);
+							started = 0;
 						}
 					}
+					if (changed) {
+						display.publish(algorithm.getPaths());
+						requestRepaint();
+					}
 					long startWait = System.currentTimeMillis();
 					long sleepTime = getSleepTime();
-					do {
+					while (sleepTime > 0 && commands.isEmpty()) {
 						try {
 							Thread.sleep(sleepTime);
 						} catch (InterruptedException ie) {
 						}
 						sleepTime = getSleepTime() - System.currentTimeMillis()
 								+ startWait;
-					} while (sleepTime > 0);
+					}
 				}
 			}
 		};
 		loop.start();
 	}
 
+	private void finished(final int search) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if (search == searches && !editing) {
+					btnStart.setEnabled(false);
+				}
+			}
+		});
+	}
+
+	private void requestRepaint() {
+		if (repaintPending.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					repaintPending.set(false);
+					display.repaintChanges();
+					updateIterations();
+				}
+			});
+		}
+	}
+
 	private long getSleepTime() {
-		int speed = speedSlider.getValue();
 		if (speed == 0) {
 			return Long.MAX_VALUE;
 		} else {
-			return 1000 / speedSlider.getValue();
+			return Math.max(FRAME_MILLIS, 1000 / speed);
 		}
 	}
 
 	private void updateIterations() {
-		lblTotalIterations.setText("Total Iterations: " + iterations);
+		final SearchMetrics m = metrics;
+		final Runtime runtime = Runtime.getRuntime();
+		final long memory = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+		if (iterations == 0 || m == null) {
+			lblTotalIterations.setText("Total Iterations: " + iterations
+					+ "   Memory: " + memory + " MB");
+			return;
+		}
+		final long elapsed = System.nanoTime() - metricsStart;
+		final long rate = elapsed <= 0 ? 0 : m.getExpansions() * 1000000000L
+				/ elapsed;
+		lblTotalIterations.setText("Total Iterations: " + iterations
+				+ "   Expansions: " + m.getExpansions() + " (" + rate
+				+ "/s)   Peak Open: " + m.getPeakOpen() + "   Memory: "
+				+ memory + " MB");
 	}
 
+	/**
+	 * Draws the map and the search. The display keeps its own copy of the
+	 * state and parent of every cell, updated through {@link CellListener} as
+	 * the search steps, and repaints only the area the changes touched.
+	 */
 	private class Display extends JComponent implements MouseListener,
-			MouseMotionListener {
+			MouseMotionListener, CellListener {
 
 		private static final long serialVersionUID = -3523892746907495075L;
 
@@ -381,6 +544,26 @@ public class PathFinder extends JApplet {
 
 		private Dimension size;
 
+		// Cell state, written by the loop thread only. Cells are indexed by
+		// y * width + x; parents are cells or -1.
+		private int width = 0;
+		private int height = 0;
+		private byte[] states = new byte[0];
+		private int[] parents = new int[0];
+		// Every cell reported since the last clear, to find the links.
+		private int[] seen = new int[16];
+		private int seenCount = 0;
+		private boolean[] listed = new boolean[0];
+		private Rectangle changed = null;
+
+		// What the EDT draws: the last published frame and the area changed
+		// since the EDT last repainted.
+		private volatile Frame frame = new Frame(0, 0, new byte[0],
+				new int[0], new int[0], new Node[] { null });
+		private final AtomicReference<Rectangle> dirty = new AtomicReference<Rectangle>();
+		// Where the paths were last drawn, read and written on the EDT.
+		private Rectangle pathBounds = null;
+
 		public Display() {
 			addMouseListener(this);
 			addMouseMotionListener(this);
@@ -388,25 +571,167 @@ public class PathFinder extends JApplet {
 		}
 
 		public void updateSize() {
-			if (MapData.source.x >= MapData.width) {
-				MapData.source = new Node(MapData.width - 1, MapData.source.y);
+			Node source = map.getSource();
+			Node target = map.getTarget();
+			if (source.x >= map.getWidth()) {
+				map.setSource(new Node(map.getWidth() - 1, source.y));
 			}
-			if (MapData.source.y >= MapData.height) {
-				MapData.source = new Node(MapData.source.x, MapData.height - 1);
+			if (source.y >= map.getHeight()) {
+				map.setSource(new Node(map.getSource().x, map.getHeight() - 1));
 			}
-			if (MapData.target.x >= MapData.width) {
-				MapData.target = new Node(MapData.width - 1, MapData.target.y);
+			if (target.x >= map.getWidth()) {
+				map.setTarget(new Node(map.getWidth() - 1, target.y));
 			}
-			if (MapData.target.y >= MapData.height) {
-				MapData.target = new Node(MapData.target.x, MapData.height - 1);
+			if (target.y >= map.getHeight()) {
+				map.setTarget(new Node(map.getTarget().x, map.getHeight() - 1));
 			}
-			size = new Dimension(MapData.width * BOX_WIDTH + 1, MapData.height
-					* BOX_WIDTH + 1);
+			size = new Dimension(map.getWidth() * BOX_WIDTH + 1,
+					map.getHeight() * BOX_WIDTH + 1);
 			setPreferredSize(size);
 			setSize(size);
+			final int width = map.getWidth();
+			final int height = map.getHeight();
+			submit(new Runnable() {
+				@Override
+				public void run() {
+					resizeCells(width, height);
+				}
+			});
 			repaint();
 		}
 
+		private void resizeCells(int width, int height) {
+			this.width = width;
+			this.height = height;
+			states = new byte[width * height];
+			parents = new int[width * height];
+			listed = new boolean[width * height];
+			seenCount = 0;
+			changed = null;
+		}
+
+		@Override
+		public void cellsCleared() {
+			for (int i = 0; i < seenCount; i++) {
+				states[seen[i]] = UNSEEN;
+				listed[seen[i]] = false;
+			}
+			seenCount = 0;
+			changed = new Rectangle(width * BOX_WIDTH + 1, height * BOX_WIDTH
+					+ 1);
+		}
+
+		@Override
+		public void cellChanged(int x, int y, byte state, int parentX,
+				int parentY) {
+			if (x >= width || y >= height) {
+				return;
+			}
+			final int cell = y * width + x;
+			if (!listed[cell]) {
+				if (seenCount == seen.length) {
+					seen = Arrays.copyOf(seen, seenCount * 2);
+				}
+				seen[seenCount++] = cell;
+				listed[cell] = true;
+			} else if (states[cell] != UNSEEN && parents[cell] >= 0) {
+				addChanged(linkBounds(width, cell, parents[cell]));
+			}
+			states[cell] = state;
+			parents[cell] = parentX >= 0 && parentX < width && parentY >= 0
+					&& parentY < height ? parentY * width + parentX : -1;
+			addChanged(new Rectangle(x * BOX_WIDTH, y * BOX_WIDTH,
+					BOX_WIDTH + 1, BOX_WIDTH + 1));
+			if (parents[cell] >= 0) {
+				addChanged(linkBounds(width, cell, parents[cell]));
+			}
+		}
+
+		private void addChanged(Rectangle r) {
+			if (changed == null) {
+				changed = r;
+			} else {
+				changed.add(r);
+			}
+		}
+
+		/**
+		 * Publishes a copy of the cells and the given paths for the EDT to
+		 * draw, on the loop thread. Copying the whole grid keeps the EDT free
+		 * of locks and costs little next to drawing it.
+		 */
+		public void publish(Node[] paths) {
+			frame = new Frame(width, height, states.clone(), parents.clone(),
+					Arrays.copyOf(seen, seenCount), paths);
+			final Rectangle area = changed;
+			changed = null;
+			if (area != null) {
+				for (;;) {
+					final Rectangle old = dirty.get();
+					final Rectangle union = old == null ? area : old
+							.union(area);
+					if (dirty.compareAndSet(old, union)) {
+						break;
+					}
+				}
+			}
+		}
+
+		private Rectangle linkBounds(int width, int cell, int parent) {
+			final int x1 = cell % width * BOX_WIDTH + BOX_MID;
+			final int y1 = cell / width * BOX_WIDTH + BOX_MID;
+			final int x2 = parent % width * BOX_WIDTH + BOX_MID;
+			final int y2 = parent / width * BOX_WIDTH + BOX_MID;
+			final Rectangle r = new Rectangle(x1, y1, 0, 0);
+			r.add(x2, y2);
+			r.grow(BOX_MID, BOX_MID);
+			return r;
+		}
+
+		/**
+		 * Repaints the area changed by the frames published since the last
+		 * call, along with where the paths were and are now drawn.
+		 */
+		public void repaintChanges() {
+			Rectangle area = dirty.getAndSet(null);
+			final Rectangle paths = getPathBounds(frame.paths);
+			for (Rectangle r : new Rectangle[] { pathBounds, paths }) {
+				if (r != null) {
+					if (area == null) {
+						area = r;
+					} else {
+						area.add(r);
+					}
+				}
+			}
+			if (area != null) {
+				repaint(area);
+			}
+		}
+
+		private Rectangle getPathBounds(Node[] paths) {
+			Rectangle bounds = null;
+			for (Node node : paths) {
+				for (; node != null; node = node.parent) {
+					if (isWithinBounds(node)) {
+						final Rectangle r = new Rectangle(node.x * BOX_WIDTH,
+								node.y * BOX_WIDTH, BOX_WIDTH, BOX_WIDTH);
+						if (bounds == null) {
+							bounds = r;
+						} else {
+							bounds.add(r);
+						}
+					}
+				}
+			}
+			return bounds;
+		}
+
+		private void repaintCell(Node node) {
+			repaint(node.x * BOX_WIDTH, node.y * BOX_WIDTH, BOX_WIDTH + 1,
+					BOX_WIDTH + 1);
+		}
+
 		@Override
 		public void paint(Graphics g1) {
 			super.paint(g1);
@@ -414,59 +739,73 @@ public class PathFinder extends JApplet {
 			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
 					RenderingHints.VALUE_ANTIALIAS_ON);
 
-			List<Node> closed = copy(algorithm.getVisitedNodes());
-			List<Node> open = copy(algorithm.getUnvisitedNodes());
+			final Frame f = frame;
 
 			g.setColor(Color.WHITE);
 			Rectangle canvas = g.getClipBounds();
 			g.fillRect(canvas.x, canvas.y, canvas.width, canvas.height);
 
-			g.setColor(Color.GRAY);
-			drawNodes(MapData.walls, g);
-
-			g.setColor(Color.BLUE);
-			drawNodes(closed, g);
-
-			g.setColor(Color.CYAN);
-			drawNodes(open, g);
+			final int minX = Math.max(0, canvas.x / BOX_WIDTH);
+			final int minY = Math.max(0, canvas.y / BOX_WIDTH);
+			final int maxX = Math.min(map.getWidth() - 1,
+					(canvas.x + canvas.width) / BOX_WIDTH);
+			final int maxY = Math.min(map.getHeight() - 1,
+					(canvas.y + canvas.height) / BOX_WIDTH);
+
+			for (int y = minY; y <= maxY; y++) {
+				for (int x = minX; x <= maxX; x++) {
+					final byte state = x < f.width && y < f.height ? f.states[y
+							* f.width + x] : UNSEEN;
+					if (map.isWall(x, y)) {
+						g.setColor(Color.GRAY);
+					} else if (state == CLOSED) {
+						g.setColor(Color.BLUE);
+					} else if (state == OPEN) {
+						g.setColor(Color.CYAN);
+					} else {
+						continue;
+					}
+					g.fillRect(x * BOX_WIDTH, y * BOX_WIDTH, BOX_WIDTH,
+							BOX_WIDTH);
+				}
+			}
 
 			g.setColor(Color.GREEN);
-			drawNode(MapData.target, g);
+			drawNode(map.getTarget(), g);
 
 			g.setColor(Color.RED);
-			drawNode(MapData.source, g);
+			drawNode(map.getSource(), g);
 
 			g.setColor(Color.LIGHT_GRAY);
-			for (int i = 0; i <= MapData.width; i++) {
+			for (int i = minX; i <= maxX + 1; i++) {
 				int x = i * BOX_WIDTH;
 				g.drawLine(x, 0, x, 0 + size.height);
 			}
-			for (int i = 0; i <= MapData.height; i++) {
+			for (int i = minY; i <= maxY + 1; i++) {
 				int y = i * BOX_WIDTH;
 				g.drawLine(0, y, 0 + size.width, y);
 			}
 
 			g.setStroke(stroke);
 			g.setColor(Color.GRAY);
-			drawLinks(closed, g);
-			drawLinks(open, g);
+			for (int cell : f.seen) {
+				final int parent = f.parents[cell];
+				if (f.states[cell] != UNSEEN && parent >= 0
+						&& linkBounds(f.width, cell, parent).intersects(canvas)) {
+					g.drawLine(cell % f.width * BOX_WIDTH + BOX_MID, cell
+							/ f.width * BOX_WIDTH + BOX_MID, parent % f.width
+							* BOX_WIDTH + BOX_MID, parent / f.width * BOX_WIDTH
+							+ BOX_MID);
+				}
+			}
 
 			g.setColor(Color.YELLOW);
-			for (Node node : algorithm.getPaths()) {
+			for (Node node : f.paths) {
 				for (; node != null; node = node.parent) {
 					drawLink(node, g);
 				}
 			}
-		}
-
-		private List<Node> copy(Collection<? extends Node> nodes) {
-			return new LinkedList<Node>(nodes);
-		}
-
-		private void drawNodes(Collection<Node> nodes, Graphics g) {
-			for (Node node : nodes) {
-				drawNode(node, g);
-			}
+			pathBounds = getPathBounds(f.paths);
 		}
 
 		private void drawNode(Node node, Graphics g) {
@@ -477,12 +816,6 @@ public class PathFinder extends JApplet {
 			}
 		}
 
-		private void drawLinks(List<Node> nodes, Graphics g) {
-			for (Node node : nodes) {
-				drawLink(node, g);
-			}
-		}
-
 		private void drawLink(Node node, Graphics g) {
 			if (node.parent != null && isWithinBounds(node)) {
 				int x1 = node.x * BOX_WIDTH + BOX_MID;
@@ -494,8 +827,8 @@ public class PathFinder extends JApplet {
 		}
 
 		private boolean isWithinBounds(Node node) {
-			return node.x >= 0 && node.x < MapData.width && node.y >= 0
-					&& node.y < MapData.height;
+			return node.x >= 0 && node.x < map.getWidth() && node.y >= 0
+					&& node.y < map.getHeight();
 		}
 
 		private Clicked clicked;
@@ -504,40 +837,45 @@ public class PathFinder extends JApplet {
 		@Override
 		public void mousePressed(MouseEvent e) {
 			if (editing) {
-				mouseLocation = pointToNode(e.getPoint());
-				if (mouseLocation.equals(MapData.source)) {
+				Node loc = pointToNode(e.getPoint());
+				if (!map.contains(loc.x, loc.y)) {
+					return;
+				}
+				mouseLocation = loc;
+				if (mouseLocation.equals(map.getSource())) {
 					clicked = Clicked.SOURCE;
-				} else if (mouseLocation.equals(MapData.target)) {
+				} else if (mouseLocation.equals(map.getTarget())) {
 					clicked = Clicked.TARGET;
 				} else {
-					if (MapData.walls.contains(mouseLocation)) {
+					if (map.isWall(mouseLocation.x, mouseLocation.y)) {
 						clicked = Clicked.DELETE_WALL;
-						MapData.walls.remove(mouseLocation);
+						map.removeWall(mouseLocation.x, mouseLocation.y);
 					} else {
 						clicked = Clicked.ADD_WALL;
-						MapData.walls.add(mouseLocation);
+						map.addWall(mouseLocation.x, mouseLocation.y);
 					}
-					repaint();
+					repaintCell(mouseLocation);
 				}
 			}
 		}
 
 		@Override
 		public void mouseDragged(MouseEvent e) {
-			if (editing) {
+			if (editing && clicked != null) {
 				Node loc = pointToNode(e.getPoint());
-				if (!loc.equals(mouseLocation)) {
+				if (map.contains(loc.x, loc.y) && !loc.equals(mouseLocation)) {
 					if (clicked == Clicked.SOURCE) {
-						MapData.source = loc;
+						map.setSource(loc);
 					} else if (clicked == Clicked.TARGET) {
-						MapData.target = loc;
+						map.setTarget(loc);
 					} else if (clicked == Clicked.DELETE_WALL) {
-						MapData.walls.remove(loc);
+						map.removeWall(loc.x, loc.y);
 					} else {
-						MapData.walls.add(loc);
+						map.addWall(loc.x, loc.y);
 					}
+					repaintCell(mouseLocation);
+					repaintCell(loc);
 					mouseLocation = loc;
-					repaint();
 				}
 			}
 		}
@@ -572,4 +910,30 @@ public class PathFinder extends JApplet {
 		public void mouseExited(MouseEvent e) {
 		}
 	}
+
+	/**
+	 * The cells and paths of a search as published by the loop thread. It is
+	 * never changed once published.
+	 */
+	private static final class Frame {
+
+		final int width;
+		final int height;
+		final byte[] states;
+		final int[] parents;
+		final int[] seen;
+		final Node[] paths;
+
+		Frame(int width, int height, byte[] states, int[] parents, int[] seen,
+				Node[] paths) {
+			this.width = width;
+			this.height = height;
+			this.states = states;
+			this.parents = parents;
+			this.seen = seen;
+			this.paths = paths;
+		}
+
+	}
+
 }
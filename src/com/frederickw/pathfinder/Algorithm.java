@@ -2,12 +2,43 @@ package com.frederickw.pathfinder;
 
 import java.util.Collection;
 
+/**
+ * A search that can be run to the end with {@link #solve} or stepped with
+ * its state shown along the way. An algorithm is not thread-safe: one
+ * thread at a time may step it and read its state, and other threads may
+ * only {@link #cancel()} it.
+ */
 public interface Algorithm {
 
-	public abstract void init();
+	public abstract void init(GridMap map, PathQuery query);
 
 	public abstract boolean step();
 
+	/**
+	 * Makes up to {@code steps} steps, stopping early when the search ends
+	 * or is cancelled. Returns whether the search is over; a step usually
+	 * expands one node.
+	 */
+	public abstract boolean step(int steps);
+
+	/**
+	 * Steps until the search ends, is cancelled or the deadline, a
+	 * {@link System#nanoTime()} value, has passed. At least one step is made,
+	 * and the deadline is overrun by at most one step. Returns whether the
+	 * search is over.
+	 */
+	public abstract boolean stepUntil(long deadline);
+
+	/**
+	 * Asks the search in progress to stop, from any thread. The stepping
+	 * methods return {@code true} from their next step on and
+	 * {@link #solve} returns a result with no path. The request is cleared
+	 * by the next {@link #init}.
+	 */
+	public abstract void cancel();
+
+	public abstract boolean isCancelled();
+
 	public abstract Collection<? extends Node> getUnvisitedNodes();
 
 	public abstract Collection<? extends Node> getVisitedNodes();
@@ -16,4 +47,19 @@ public interface Algorithm {
 
 	public abstract void reset();
 
+	public abstract PathResult solve(GridMap map, PathQuery query);
+
+	/**
+	 * Sets the listener told about every search from the next
+	 * {@link #init} on, or removes it if {@code null}.
+	 */
+	public abstract void setListener(SearchListener listener);
+
+	/**
+	 * Sets the listener told about the cells changed by every step, or
+	 * removes it if {@code null}. It takes effect from the next
+	 * {@link #init}.
+	 */
+	public abstract void setCellListener(CellListener listener);
+
 }
@@ -0,0 +1,10 @@
+package com.frederickw.pathfinder;
+
+/**
+ * Creates fresh, independent {@link Algorithm} instances.
+ */
+public interface AlgorithmFactory {
+
+	public abstract Algorithm create();
+
+}
@@ -0,0 +1,98 @@
+package com.frederickw.pathfinder;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves many queries against one map in parallel on a work-stealing pool.
+ * Every worker thread keeps its own {@link Algorithm} instance from the
+ * factory and reuses it, along with its buffers, for every query it runs.
+ * Results may be shared through a {@link PathCache}, keyed on the factory.
+ */
+public final class BatchSolver {
+
+	// Queries per leaf task; small enough to let idle workers steal.
+	private static final int THRESHOLD = 16;
+
+	private final ForkJoinPool pool;
+	private final AlgorithmFactory factory;
+	private final ThreadLocal<Algorithm> algorithms;
+	private final PathCache cache;
+
+	public BatchSolver(AlgorithmFactory factory) {
+		this(factory, Runtime.getRuntime().availableProcessors());
+	}
+
+	public BatchSolver(AlgorithmFactory factory, int parallelism) {
+		this(factory, parallelism, null);
+	}
+
+	public BatchSolver(final AlgorithmFactory factory, int parallelism,
+			PathCache cache) {
+		pool = new ForkJoinPool(parallelism);
+		this.factory = factory;
+		this.cache = cache;
+		algorithms = new ThreadLocal<Algorithm>() {
+			@Override
+			protected Algorithm initialValue() {
+				return factory.create();
+			}
+		};
+	}
+
+	public PathResult[] solve(GridMap map, List<PathQuery> queries) {
+		return solve(map, queries.toArray(new PathQuery[queries.size()]));
+	}
+
+	public PathResult[] solve(GridMap map, PathQuery[] queries) {
+		PathResult[] results = new PathResult[queries.length];
+		pool.invoke(new SolveTask(map, queries, results, 0, queries.length));
+		return results;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	private class SolveTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 5018347230612395531L;
+
+		private final GridMap map;
+		private final PathQuery[] queries;
+		private final PathResult[] results;
+		private final int from;
+		private final int to;
+
+		public SolveTask(GridMap map, PathQuery[] queries,
+				PathResult[] results, int from, int to) {
+			this.map = map;
+			this.queries = queries;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				Algorithm algorithm = algorithms.get();
+				for (int i = from; i < to; i++) {
+					if (cache != null) {
+						results[i] = cache.solve(factory, algorithm, map,
+								queries[i]);
+					} else {
+						results[i] = algorithm.solve(map, queries[i]);
+					}
+				}
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new SolveTask(map, queries, results, from, mid),
+						new SolveTask(map, queries, results, mid, to));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.frederickw.pathfinder;
+
+/**
+ * Receives the cells a search changes, so a consumer such as a display can
+ * keep its own copy of the search state instead of taking a snapshot. The
+ * changes of a step are delivered on the thread stepping the search, once
+ * the step is over.
+ * <p>
+ * A cell may be reported more than once per step; the last report holds
+ * its current state and parent.
+ */
+public interface CellListener {
+
+	public static final byte UNSEEN = 0;
+	public static final byte OPEN = 1;
+	public static final byte CLOSED = 2;
+
+	/** Called when a search starts: every cell is unseen. */
+	public abstract void cellsCleared();
+
+	/**
+	 * Called when a cell is opened, closed, forgotten or given a new
+	 * parent. The parent coordinates are -1 for a cell without one.
+	 */
+	public abstract void cellChanged(int x, int y, byte state, int parentX,
+			int parentY);
+
+}
@@ -0,0 +1,268 @@
+package com.frederickw.pathfinder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The walls of a map in the chunked layout of {@link MapFile}, read from
+ * disk a chunk at a time as searches first touch them. At most a fixed
+ * number of chunks are held; when full, the least recently used one is
+ * evicted. Only the header is read on opening, so memory follows the cells
+ * the searches touch rather than the size of the map.
+ * <p>
+ * Every lookup counts as a hit or a miss. The walls are thread-safe, but
+ * each lookup takes a lock, so searches on many threads contend for it.
+ * A lookup that fails to read the file throws an
+ * {@link IllegalStateException}.
+ */
+public final class ChunkedWalls implements WallSource, Closeable {
+
+	private final File file;
+	private final RandomAccessFile in;
+	private final int width;
+	private final int height;
+	private final int side;
+	private final int capacity;
+	// log2 of the side, and of the number of longs in a row of a chunk.
+	private final int sideShift;
+	private final int rowShift;
+	private final int across;
+	private final int chunkBytes;
+	private final byte[] bytes;
+	private final ByteBuffer view;
+	private final GridMap map;
+
+	// Resident chunks by index, and a list of them from the most recently
+	// used to the least.
+	private final long[][] chunks;
+	private final int[] newer;
+	private final int[] older;
+	private int newest = -1;
+	private int oldest = -1;
+	private int resident = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	private ChunkedWalls(File file, RandomAccessFile in, int width,
+			int height, int side, int capacity) {
+		this.file = file;
+		this.in = in;
+		this.width = width;
+		this.height = height;
+		this.side = side;
+		this.capacity = capacity;
+		sideShift = Integer.numberOfTrailingZeros(side);
+		rowShift = sideShift - 6;
+		across = (width + side - 1) >>> sideShift;
+		final int count = across * ((height + side - 1) >>> sideShift);
+		chunkBytes = side * side / 8;
+		bytes = new byte[chunkBytes];
+		view = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		chunks = new long[count][];
+		newer = new int[count];
+		older = new int[count];
+		map = new GridMap(width, height, this);
+	}
+
+	/**
+	 * Opens a chunked map file, holding at most {@code capacity} chunks in
+	 * memory at once.
+	 */
+	public static ChunkedWalls open(File file, int capacity)
+			throws IOException {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("invalid capacity");
+		}
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			if (in.length() < MapFile.CHUNKED_HEADER_BYTES
+					|| Integer.reverseBytes(in.readInt()) != MapFile.MAGIC) {
+				throw new IOException(file + ": not a map file");
+			}
+			final int version = Integer.reverseBytes(in.readInt());
+			if (version != MapFile.CHUNKED_VERSION) {
+				throw new IOException(file + ": not a chunked map (version "
+						+ version + ")");
+			}
+			final int width = Integer.reverseBytes(in.readInt());
+			final int height = Integer.reverseBytes(in.readInt());
+			final int side = Integer.reverseBytes(in.readInt());
+			if (width <= 0 || height <= 0
+					|| (long) width * height > Integer.MAX_VALUE - 63) {
+				throw new IOException(file + ": invalid size " + width + "x"
+						+ height);
+			}
+			if (side < 64 || side > 1 << 14 || Integer.bitCount(side) != 1) {
+				throw new IOException(file + ": invalid chunk side " + side);
+			}
+			final long count = (long) ((width + side - 1) / side)
+					* ((height + side - 1) / side);
+			if (in.length() < MapFile.CHUNKED_HEADER_BYTES + count * side
+					* side / 8) {
+				throw new IOException(file + ": truncated");
+			}
+			final ChunkedWalls walls = new ChunkedWalls(file, in, width,
+					height, side, capacity);
+			in = null;
+			return walls;
+		} finally {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+
+	/** Returns the map over these walls. */
+	public GridMap getMap() {
+		return map;
+	}
+
+	public int getChunkSide() {
+		return side;
+	}
+
+	public int getChunkCount() {
+		return chunks.length;
+	}
+
+	/** Returns the most chunks held at once. */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/** Returns the number of chunks held now. */
+	public synchronized int getResident() {
+		return resident;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/** Returns the number of chunks dropped to make room for others. */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/** Returns the fraction of lookups that found their chunk held. */
+	public synchronized double getHitRate() {
+		return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+	}
+
+	@Override
+	public synchronized boolean isWall(int cell) {
+		final int x = cell % width;
+		final int y = cell / width;
+		final long[] chunk = chunk((y >>> sideShift) * across
+				+ (x >>> sideShift));
+		final int local = x & (side - 1);
+		return (chunk[((y & (side - 1)) << rowShift) + (local >>> 6)]
+				& (1L << local)) != 0;
+	}
+
+	@Override
+	public synchronized long getWord(int index) {
+		final int first = index << 6;
+		final int end = (int) Math.min((long) width * height, first + 64L);
+		long word = 0;
+		for (int cell = first; cell < end; cell++) {
+			if (isWall(cell)) {
+				word |= 1L << cell;
+			}
+		}
+		return word;
+	}
+
+	/** Drops every chunk held, keeping the counters. */
+	public synchronized void evictAll() {
+		Arrays.fill(chunks, null);
+		newest = -1;
+		oldest = -1;
+		resident = 0;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		evictAll();
+		in.close();
+	}
+
+	// Returns a chunk, loading it if needed, and makes it the most recently
+	// used.
+	private long[] chunk(int index) {
+		long[] chunk = chunks[index];
+		if (chunk != null) {
+			hits++;
+			if (index != newest) {
+				unlink(index);
+				push(index);
+			}
+			return chunk;
+		}
+		misses++;
+		if (resident == capacity) {
+			final int eldest = oldest;
+			chunk = chunks[eldest];
+			chunks[eldest] = null;
+			unlink(eldest);
+			resident--;
+			evictions++;
+		} else {
+			chunk = new long[chunkBytes / 8];
+		}
+		read(index, chunk);
+		chunks[index] = chunk;
+		push(index);
+		resident++;
+		return chunk;
+	}
+
+	private void read(int index, long[] chunk) {
+		try {
+			in.seek(MapFile.CHUNKED_HEADER_BYTES + (long) index * chunkBytes);
+			in.readFully(bytes);
+		} catch (IOException e) {
+			throw new IllegalStateException(file + ": cannot read chunk "
+					+ index, e);
+		}
+		for (int i = 0; i < chunk.length; i++) {
+			chunk[i] = view.getLong(i << 3);
+		}
+	}
+
+	private void unlink(int index) {
+		if (newer[index] >= 0) {
+			older[newer[index]] = older[index];
+		} else {
+			newest = older[index];
+		}
+		if (older[index] >= 0) {
+			newer[older[index]] = newer[index];
+		} else {
+			oldest = newer[index];
+		}
+	}
+
+	private void push(int index) {
+		newer[index] = -1;
+		older[index] = newest;
+		if (newest >= 0) {
+			newer[newest] = index;
+		} else {
+			oldest = index;
+		}
+		newest = index;
+	}
+
+}
@@ -0,0 +1,248 @@
+package com.frederickw.pathfinder;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An immutable 8-connected grid. Cells are addressed either by coordinates
+ * or by their packed index {@code y * width + x}; walls are held one bit per
+ * cell, in a heap array or in a {@link WallSource} such as a mapped
+ * {@link MapFile}. A map can be shared freely between threads and searches.
+ */
+public final class GridMap {
+
+	public static final int MAX_NEIGHBOURS = 8;
+	public static final double STRAIGHT_COST = 1.0;
+	public static final double DIAGONAL_COST = 1.414213562373;
+	// Step costs in integer units. 99/70 rounds the square root of two up by
+	// less than 0.01%, so distance estimates scaled by STRAIGHT_UNITS stay
+	// admissible.
+	public static final int STRAIGHT_UNITS = 70;
+	public static final int DIAGONAL_UNITS = 99;
+
+	// Directions in the order getTraversable() has always produced them.
+	private static final int[] DX = { -1, -1, -1, 0, 0, 1, 1, 1 };
+	private static final int[] DY = { -1, 0, 1, -1, 1, -1, 0, 1 };
+	private static final double[] COSTS = { DIAGONAL_COST, STRAIGHT_COST,
+			DIAGONAL_COST, STRAIGHT_COST, STRAIGHT_COST, DIAGONAL_COST,
+			STRAIGHT_COST, DIAGONAL_COST };
+	private static final int[] UNITS = { DIAGONAL_UNITS, STRAIGHT_UNITS,
+			DIAGONAL_UNITS, STRAIGHT_UNITS, STRAIGHT_UNITS, DIAGONAL_UNITS,
+			STRAIGHT_UNITS, DIAGONAL_UNITS };
+	// Directions a diagonal step may not cut past: both must be open.
+	private static final int[] CORNERS = { 1 << 1 | 1 << 3, 0, 1 << 1 | 1 << 4,
+			0, 0, 1 << 6 | 1 << 3, 0, 1 << 6 | 1 << 4 };
+	// Directions leaving the map from each edge.
+	private static final int WEST_EDGE = 1 << 0 | 1 << 1 | 1 << 2;
+	private static final int EAST_EDGE = 1 << 5 | 1 << 6 | 1 << 7;
+	private static final int NORTH_EDGE = 1 << 0 | 1 << 3 | 1 << 5;
+	private static final int SOUTH_EDGE = 1 << 2 | 1 << 4 | 1 << 7;
+
+	private final int width;
+	private final int height;
+	// Exactly one of these holds the walls.
+	private final long[] walls;
+	private final WallSource source;
+	private final int[] offsets = new int[MAX_NEIGHBOURS];
+
+	public GridMap(int width, int height) {
+		this(width, height, new long[(width * height + 63) >>> 6]);
+	}
+
+	/**
+	 * Creates a map over a row-major wall bitset with a row stride of
+	 * {@code width}. The array is not copied and must not be modified
+	 * afterwards.
+	 */
+	public GridMap(int width, int height, long[] walls) {
+		this(width, height, walls, null);
+		if (walls.length < (width * height + 63) >>> 6) {
+			throw new IllegalArgumentException("wall bitset too small");
+		}
+	}
+
+	/** Creates a map whose walls are read from {@code source} on demand. */
+	public GridMap(int width, int height, WallSource source) {
+		this(width, height, null, source);
+		if (source == null) {
+			throw new NullPointerException();
+		}
+	}
+
+	private GridMap(int width, int height, long[] walls, WallSource source) {
+		if (width <= 0 || height <= 0
+				|| (long) width * height > Integer.MAX_VALUE - 63) {
+			throw new IllegalArgumentException("invalid size");
+		}
+		this.width = width;
+		this.height = height;
+		this.walls = walls;
+		this.source = source;
+		for (int d = 0; d < MAX_NEIGHBOURS; d++) {
+			offsets[d] = DY[d] * width + DX[d];
+		}
+	}
+
+	/**
+	 * Returns the cost of the shortest path across {@code dx} columns and
+	 * {@code dy} rows of an empty map.
+	 */
+	public static double octile(int dx, int dy) {
+		dx = Math.abs(dx);
+		dy = Math.abs(dy);
+		return Math.min(dx, dy) * DIAGONAL_COST + Math.abs(dx - dy)
+				* STRAIGHT_COST;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getCells() {
+		return width * height;
+	}
+
+	public int cellOf(int x, int y) {
+		return y * width + x;
+	}
+
+	public int getX(int cell) {
+		return cell % width;
+	}
+
+	public int getY(int cell) {
+		return cell / width;
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	public boolean isWall(int cell) {
+		if (walls == null) {
+			return source.isWall(cell);
+		}
+		return (walls[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	/** Returns whether a cell is a wall; cells off the map count as walls. */
+	public boolean isWall(int x, int y) {
+		return !contains(x, y) || isWall(y * width + x);
+	}
+
+	/**
+	 * Returns the first cell at or after {@code fromCell} that is a wall in
+	 * one map but not in the other, or -1 if there is none. Both maps must be
+	 * the same size.
+	 */
+	public int nextDifference(GridMap other, int fromCell) {
+		if (other.width != width || other.height != height) {
+			throw new IllegalArgumentException("maps differ in size");
+		}
+		final int cells = width * height;
+		if (fromCell >= cells) {
+			return -1;
+		}
+		final int words = (cells + 63) >>> 6;
+		int w = fromCell >>> 6;
+		long diff = (word(w) ^ other.word(w)) & (-1L << fromCell);
+		for (;;) {
+			if (diff != 0) {
+				final int cell = (w << 6) + Long.numberOfTrailingZeros(diff);
+				return cell < cells ? cell : -1;
+			}
+			if (++w == words) {
+				return -1;
+			}
+			diff = word(w) ^ other.word(w);
+		}
+	}
+
+	/**
+	 * Returns the walls of cells {@code 64 * index} up to
+	 * {@code 64 * index + 63}, the first in the lowest bit.
+	 */
+	long word(int index) {
+		return walls != null ? walls[index] : source.getWord(index);
+	}
+
+	/**
+	 * Writes the traversable neighbours of a cell into {@code cells} and the
+	 * cost of stepping to each into {@code costs}, and returns how many were
+	 * written. Both buffers must hold at least {@link #MAX_NEIGHBOURS}
+	 * entries. Diagonal steps that would cut the corner of a wall are
+	 * excluded.
+	 */
+	public int getNeighbours(int cell, int[] cells, double[] costs) {
+		final int closed = closedDirections(cell);
+		int count = 0;
+		for (int d = 0; d < MAX_NEIGHBOURS; d++) {
+			if ((closed & (1 << d | CORNERS[d])) == 0) {
+				cells[count] = cell + offsets[d];
+				costs[count] = COSTS[d];
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * As {@link #getNeighbours(int, int[], double[])}, with the cost of each
+	 * step in {@link #STRAIGHT_UNITS} and {@link #DIAGONAL_UNITS}.
+	 */
+	public int getNeighbours(int cell, int[] cells, int[] units) {
+		final int closed = closedDirections(cell);
+		int count = 0;
+		for (int d = 0; d < MAX_NEIGHBOURS; d++) {
+			if ((closed & (1 << d | CORNERS[d])) == 0) {
+				cells[count] = cell + offsets[d];
+				units[count] = UNITS[d];
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// Returns a mask of the directions leaving the map or entering a wall.
+	private int closedDirections(int cell) {
+		final int x = cell % width;
+		final int y = cell / width;
+		int closed = 0;
+		if (x == 0) {
+			closed |= WEST_EDGE;
+		}
+		if (x == width - 1) {
+			closed |= EAST_EDGE;
+		}
+		if (y == 0) {
+			closed |= NORTH_EDGE;
+		}
+		if (y == height - 1) {
+			closed |= SOUTH_EDGE;
+		}
+		for (int d = 0; d < MAX_NEIGHBOURS; d++) {
+			if ((closed & 1 << d) == 0 && isWall(cell + offsets[d])) {
+				closed |= 1 << d;
+			}
+		}
+		return closed;
+	}
+
+	public <E extends Node> List<E> getTraversable(E node) {
+		final int[] cells = new int[MAX_NEIGHBOURS];
+		final int count = getNeighbours(cellOf(node.x, node.y), cells,
+				new double[MAX_NEIGHBOURS]);
+		List<E> traversable = new LinkedList<E>();
+		for (int i = 0; i < count; i++) {
+			@SuppressWarnings("unchecked")
+			E n = (E) node.newNode(getX(cells[i]), getY(cells[i]));
+			traversable.add(n);
+		}
+		return traversable;
+	}
+
+}
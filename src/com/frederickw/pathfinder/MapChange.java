@@ -0,0 +1,37 @@
+package com.frederickw.pathfinder;
+
+/**
+ * A single edit to a {@link MapData}, tagged with the version it produced.
+ * For a resize, {@code x} and {@code y} hold the new width and height; for
+ * every other change they hold the cell affected.
+ */
+public final class MapChange {
+
+	public enum Type {
+		WALL_ADDED, WALL_REMOVED, RESIZED, SOURCE_MOVED, TARGET_MOVED;
+	}
+
+	public final Type type;
+	public final int x;
+	public final int y;
+	public final long version;
+
+	public MapChange(Type type, int x, int y, long version) {
+		this.type = type;
+		this.x = x;
+		this.y = y;
+		this.version = version;
+	}
+
+	/** Returns whether the change affects which cells are walls. */
+	public boolean isStructural() {
+		return type == Type.WALL_ADDED || type == Type.WALL_REMOVED
+				|| type == Type.RESIZED;
+	}
+
+	@Override
+	public String toString() {
+		return type + " (" + x + ", " + y + ") @" + version;
+	}
+
+}
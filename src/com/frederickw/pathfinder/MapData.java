@@ -1,39 +1,223 @@
 package com.frederickw.pathfinder;
 
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * The editable map behind the applet: its size, the source and target cells
+ * and the walls. Searches never read it directly; they run against an
+ * immutable {@link GridMap} and {@link PathQuery} taken from it.
+ * <p>
+ * All edits go through this class. Each one that changes something raises
+ * the version by one and is passed to the listeners as a {@link MapChange}.
+ * The most recent changes are also kept in a log, so a structure built at
+ * some version can catch up with {@link #getChangesSince(long)} instead of
+ * being rebuilt. {@link #toGridMap()} hands out the same map until the size
+ * or the walls change, so a {@code GridMap} instance identifies a version of
+ * the walls.
+ * <p>
+ * Walls can only be added or removed inside the map. Those outside it are
+ * kept when it shrinks and come back when it grows; a resize is reported as
+ * a single change.
+ */
 public final class MapData {
 
-	public static int width = 50;
-	public static int height = 30;
-	public static Node source = new Node(1, 1);
-	public static Node target = new Node(2, 2);
-	public static final Set<Node> walls = new HashSet<Node>();
-
-	public static <E extends Node> List<E> getTraversable(E node) {
-		List<E> traversable = new LinkedList<E>();
-		for (int dX = -1; dX <= 1; dX++) {
-			for (int dY = -1; dY <= 1; dY++) {
-				if ((dX == 0 && dY == 0) || (dX < 0 && node.x == 0)
-						|| (dX > 0 && node.x == width - 1)
-						|| (dY < 0 && node.y == 0)
-						|| (dY > 0 && node.y == height - 1)) {
-					continue;
-				}
-				@SuppressWarnings("unchecked")
-				E n = (E) node.newNode(node.x + dX, node.y + dY);
-				if (!walls.contains(n)
-						&& (dX == 0 || dY == 0 || (!walls.contains(new Node(
-								node.x + dX, node.y)) && !walls
-								.contains(new Node(node.x, node.y + dY))))) {
-					traversable.add(n);
-				}
-			}
-		}
-		return traversable;
+	private static final int LOG_CAPACITY = 4096;
+
+	private int width;
+	private int height;
+	private Node source;
+	private Node target;
+	private final WallSet walls;
+	private final Set<Node> wallsView;
+	private final List<MapListener> listeners = new CopyOnWriteArrayList<MapListener>();
+	private final ArrayDeque<MapChange> log = new ArrayDeque<MapChange>();
+	private long version = 0;
+	private GridMap grid = null;
+
+	public MapData() {
+		this(50, 30);
+	}
+
+	public MapData(int width, int height) {
+		this.width = width;
+		this.height = height;
+		source = new Node(1, 1);
+		target = new Node(2, 2);
+		walls = new WallSet(width, height);
+		wallsView = Collections.unmodifiableSet(walls);
+	}
+
+	public void addListener(MapListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(MapListener listener) {
+		listeners.remove(listener);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public void setWidth(int width) {
+		setSize(width, height);
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public void setHeight(int height) {
+		setSize(width, height);
+	}
+
+	public void setSize(int width, int height) {
+		if (this.width != width || this.height != height) {
+			this.width = width;
+			this.height = height;
+			grid = null;
+			fire(MapChange.Type.RESIZED, width, height);
+		}
+	}
+
+	public Node getSource() {
+		return source;
+	}
+
+	public void setSource(Node source) {
+		if (!source.equals(this.source)) {
+			this.source = source;
+			fire(MapChange.Type.SOURCE_MOVED, source.x, source.y);
+		}
+	}
+
+	public Node getTarget() {
+		return target;
+	}
+
+	public void setTarget(Node target) {
+		if (!target.equals(this.target)) {
+			this.target = target;
+			fire(MapChange.Type.TARGET_MOVED, target.x, target.y);
+		}
+	}
+
+	/** Returns a read-only view of the walls. */
+	public Set<Node> getWalls() {
+		return wallsView;
+	}
+
+	public boolean isWall(int x, int y) {
+		return walls.contains(x, y);
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/**
+	 * Adds a wall, returning false if there already is one.
+	 *
+	 * @throws IllegalArgumentException if the cell is outside the map
+	 */
+	public boolean addWall(int x, int y) {
+		checkContains(x, y);
+		if (walls.add(x, y)) {
+			grid = null;
+			fire(MapChange.Type.WALL_ADDED, x, y);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a wall, returning false if there is none.
+	 *
+	 * @throws IllegalArgumentException if the cell is outside the map
+	 */
+	public boolean removeWall(int x, int y) {
+		checkContains(x, y);
+		if (walls.remove(x, y)) {
+			grid = null;
+			fire(MapChange.Type.WALL_REMOVED, x, y);
+			return true;
+		}
+		return false;
+	}
+
+	/** Removes every wall, reporting each one removed. */
+	public void clearWalls() {
+		Iterator<Node> it = walls.iterator();
+		while (it.hasNext()) {
+			Node wall = it.next();
+			it.remove();
+			grid = null;
+			fire(MapChange.Type.WALL_REMOVED, wall.x, wall.y);
+		}
+	}
+
+	/**
+	 * Returns a number that rises by one with every change.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the changes made after {@code version}, oldest first, or
+	 * {@code null} if some of them are no longer logged.
+	 */
+	public List<MapChange> getChangesSince(long version) {
+		if (version > this.version) {
+			throw new IllegalArgumentException("future version");
+		}
+		final int count = (int) Math.min(this.version - version,
+				Integer.MAX_VALUE);
+		if (count > log.size()) {
+			return null;
+		}
+		final List<MapChange> changes = new ArrayList<MapChange>(count);
+		final Iterator<MapChange> it = log.descendingIterator();
+		for (int i = 0; i < count; i++) {
+			changes.add(it.next());
+		}
+		Collections.reverse(changes);
+		return changes;
+	}
+
+	public GridMap toGridMap() {
+		if (grid == null) {
+			grid = new GridMap(width, height, walls.toLongArray(width, height));
+		}
+		return grid;
+	}
+
+	public PathQuery toQuery() {
+		return new PathQuery(source, target);
+	}
+
+	private void checkContains(int x, int y) {
+		if (!contains(x, y)) {
+			throw new IllegalArgumentException("(" + x + ", " + y
+					+ ") is outside the map");
+		}
+	}
+
+	private void fire(MapChange.Type type, int x, int y) {
+		final MapChange change = new MapChange(type, x, y, ++version);
+		if (log.size() == LOG_CAPACITY) {
+			log.removeFirst();
+		}
+		log.addLast(change);
+		for (MapListener listener : listeners) {
+			listener.mapChanged(change);
+		}
 	}
 
 }
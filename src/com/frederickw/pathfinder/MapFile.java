@@ -0,0 +1,182 @@
+package com.frederickw.pathfinder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads and writes maps in a compact binary format that is memory-mapped
+ * rather than parsed, for maps too large to build on the heap.
+ * <p>
+ * A file starts with four little-endian ints: the magic number
+ * {@link #MAGIC}, the format version, the width and the height. The walls
+ * follow in little-endian longs with the first cell of each in the lowest
+ * bit, laid out by the version:
+ * <ul>
+ * <li>{@link #FLAT_VERSION}: the row-major bitset {@link GridMap} uses,
+ * right after the 16-byte header. {@link #load(File)} maps these.</li>
+ * <li>{@link #CHUNKED_VERSION}: the header goes on with the side of a chunk,
+ * a power of two of at least 64, and a zero int. Square chunks of that side
+ * follow in row-major order, each its rows in turn, each row
+ * {@code side / 64} longs. Cells past the edge of the map are open.
+ * {@link ChunkedWalls} loads these a chunk at a time.</li>
+ * </ul>
+ */
+public final class MapFile {
+
+	/** The first four bytes of a file, {@code "PFMP"} in ASCII. */
+	public static final int MAGIC = 0x504d4650;
+	public static final int FLAT_VERSION = 1;
+	public static final int CHUNKED_VERSION = 2;
+	public static final int HEADER_BYTES = 16;
+	public static final int CHUNKED_HEADER_BYTES = 24;
+	private static final int HEADER_WORDS = HEADER_BYTES / 8;
+
+	private MapFile() {
+	}
+
+	/**
+	 * Maps a file into memory and returns a map whose walls are read from
+	 * it. Nothing is read up front but the header; pages of the file are
+	 * loaded by the operating system as searches touch them. The mapping is
+	 * kept open until the map is garbage collected.
+	 */
+	public static GridMap load(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = in.getChannel();
+			final long size = channel.size();
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+				throw new IOException(file + ": not a map file");
+			}
+			final MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException(file + ": not a map file");
+			}
+			if (buffer.getInt(4) == CHUNKED_VERSION) {
+				throw new IOException(file
+						+ ": chunked map; open it with ChunkedWalls");
+			}
+			if (buffer.getInt(4) != FLAT_VERSION) {
+				throw new IOException(file + ": unsupported version "
+						+ buffer.getInt(4));
+			}
+			final int width = buffer.getInt(8);
+			final int height = buffer.getInt(12);
+			if (width <= 0 || height <= 0
+					|| (long) width * height > Integer.MAX_VALUE - 63) {
+				throw new IOException(file + ": invalid size " + width + "x"
+						+ height);
+			}
+			final long words = ((long) width * height + 63) >>> 6;
+			if (size < HEADER_BYTES + words * 8) {
+				throw new IOException(file + ": truncated");
+			}
+			return new GridMap(width, height, new MappedWalls(
+					buffer.asLongBuffer()));
+		} finally {
+			// The mapping outlives the channel.
+			in.close();
+		}
+	}
+
+	/** Writes a map in the flat layout, for {@link #load(File)}. */
+	public static void write(GridMap map, File file) throws IOException {
+		DataOutputStream out = create(file);
+		try {
+			writeHeader(out, FLAT_VERSION, map);
+			final int words = (map.getCells() + 63) >>> 6;
+			for (int i = 0; i < words; i++) {
+				out.writeLong(Long.reverseBytes(map.word(i)));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a map in the chunked layout with chunks of {@code side} by
+	 * {@code side} cells, for {@link ChunkedWalls}.
+	 */
+	public static void writeChunked(GridMap map, File file, int side)
+			throws IOException {
+		if (side < 64 || Integer.bitCount(side) != 1) {
+			throw new IllegalArgumentException("invalid chunk side");
+		}
+		final int width = map.getWidth();
+		final int height = map.getHeight();
+		DataOutputStream out = create(file);
+		try {
+			writeHeader(out, CHUNKED_VERSION, map);
+			out.writeInt(Integer.reverseBytes(side));
+			out.writeInt(0);
+			for (int y0 = 0; y0 < height; y0 += side) {
+				for (int x0 = 0; x0 < width; x0 += side) {
+					for (int y = y0; y < y0 + side; y++) {
+						for (int x = x0; x < x0 + side; x += 64) {
+							out.writeLong(Long.reverseBytes(row(map, x, y)));
+						}
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	// The walls of 64 cells of a row from (x, y), the first in the lowest bit.
+	private static long row(GridMap map, int x, int y) {
+		long word = 0;
+		for (int i = 0; i < 64; i++) {
+			if (map.contains(x + i, y) && map.isWall(x + i, y)) {
+				word |= 1L << i;
+			}
+		}
+		return word;
+	}
+
+	private static DataOutputStream create(File file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+	}
+
+	private static void writeHeader(DataOutputStream out, int version,
+			GridMap map) throws IOException {
+		out.writeInt(Integer.reverseBytes(MAGIC));
+		out.writeInt(Integer.reverseBytes(version));
+		out.writeInt(Integer.reverseBytes(map.getWidth()));
+		out.writeInt(Integer.reverseBytes(map.getHeight()));
+	}
+
+	// Absolute gets leave the buffer's position alone, so any number of
+	// threads may read at once.
+	private static final class MappedWalls implements WallSource {
+
+		private final LongBuffer words;
+
+		MappedWalls(LongBuffer words) {
+			this.words = words;
+		}
+
+		@Override
+		public boolean isWall(int cell) {
+			return (words.get(HEADER_WORDS + (cell >>> 6)) & (1L << cell)) != 0;
+		}
+
+		@Override
+		public long getWord(int index) {
+			return words.get(HEADER_WORDS + index);
+		}
+
+	}
+
+}
@@ -0,0 +1,10 @@
+package com.frederickw.pathfinder;
+
+/**
+ * Receives every edit to a {@link MapData}, on the thread that made it.
+ */
+public interface MapListener {
+
+	public abstract void mapChanged(MapChange change);
+
+}
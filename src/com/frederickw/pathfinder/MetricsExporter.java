@@ -0,0 +1,65 @@
+package com.frederickw.pathfinder;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Writes the metrics of every finished search as one line of JSON, for
+ * loading into dashboards. Attach one exporter to any number of algorithms;
+ * lines are written whole even when they finish on different threads.
+ * <p>
+ * Each line holds the algorithm, the query, whether a path was found, its
+ * cost and length, and the counters of {@link SearchMetrics}. The cost is
+ * {@code null} when no path was found.
+ */
+public final class MetricsExporter implements SearchListener {
+
+	private final Appendable out;
+	private long written = 0;
+
+	public MetricsExporter(Appendable out) {
+		this.out = out;
+	}
+
+	@Override
+	public void searchStarted(SearchMetrics metrics) {
+	}
+
+	@Override
+	public void searchFinished(SearchMetrics metrics) {
+		write(metrics);
+	}
+
+	public synchronized void write(SearchMetrics metrics) {
+		final PathQuery q = metrics.getQuery();
+		final String line = String.format(Locale.ROOT, "{\"algorithm\":\"%s\","
+				+ "\"source\":[%d,%d],\"target\":[%d,%d],\"found\":%b,"
+				+ "\"cost\":%s,\"length\":%d,\"expansions\":%d,"
+				+ "\"relaxations\":%d,\"decreaseKeys\":%d,\"peakOpen\":%d,"
+				+ "\"peakHeapDepth\":%d,\"steps\":%d,\"nanos\":%d,"
+				+ "\"nanosPerStep\":%.1f}%n", escape(metrics.getAlgorithm()),
+				q.sourceX, q.sourceY, q.targetX, q.targetY,
+				metrics.isFound(), metrics.isFound() ? Double.toString(metrics
+						.getCost()) : "null", metrics.getLength(),
+				metrics.getExpansions(), metrics.getRelaxations(),
+				metrics.getDecreaseKeys(), metrics.getPeakOpen(),
+				metrics.getPeakHeapDepth(), metrics.getSteps(),
+				metrics.getNanos(), metrics.getNanosPerStep());
+		try {
+			out.append(line);
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot write metrics", e);
+		}
+		written++;
+	}
+
+	/** Returns the number of lines written. */
+	public synchronized long getWritten() {
+		return written;
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+}
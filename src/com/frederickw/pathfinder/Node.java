@@ -34,7 +34,7 @@ public class Node implements Comparable<Node> {
 
     @Override
     public int hashCode() {
-        return x << 16 + y;
+        return (x << 16) + y;
     }
 
     @Override
@@ -0,0 +1,257 @@
+package com.frederickw.pathfinder;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of search results on a map that changes over time, keyed
+ * on the algorithm, the source and the target. When full, the least
+ * recently used entry is evicted.
+ * <p>
+ * Entries belong to the version of the map they were computed on, which is
+ * the {@link GridMap} instance; {@link MapData#toGridMap()} hands out a new
+ * one whenever the walls or the size change. The first lookup on another map
+ * drops every entry. With selective invalidation and a map of the same size,
+ * the walls of the two maps are compared instead and only the entries the
+ * changes can affect are dropped:
+ * <ul>
+ * <li>paths that now run through a wall or cut one of its corners,</li>
+ * <li>paths a removed wall lies close enough to that it could shorten
+ * them,</li>
+ * <li>results without a path, if any wall was removed.</li>
+ * </ul>
+ * This is exact for algorithms that return shortest paths. For others, the
+ * paths kept are still valid but may differ from what a new search would
+ * find.
+ * <p>
+ * The cache is thread-safe.
+ */
+public final class PathCache {
+
+	private final int capacity;
+	private final boolean selective;
+	private final LinkedHashMap<Key, PathResult> entries;
+
+	private GridMap map = null;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long invalidations = 0;
+
+	public PathCache(int capacity) {
+		this(capacity, false);
+	}
+
+	public PathCache(final int capacity, boolean selective) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("invalid capacity");
+		}
+		this.capacity = capacity;
+		this.selective = selective;
+		entries = new LinkedHashMap<Key, PathResult>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = -1949186713745251474L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, PathResult> eldest) {
+				if (size() > capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns the cached result of a query, or {@code null}. The algorithm
+	 * key may be any object that identifies the algorithm and its settings,
+	 * such as its name.
+	 */
+	public synchronized PathResult get(Object algorithm, GridMap map,
+			PathQuery query) {
+		update(map);
+		PathResult result = entries.get(new Key(algorithm, query));
+		if (result != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return result;
+	}
+
+	/**
+	 * Caches the result of a query. Results for a map other than the one of
+	 * the last lookup are dropped, as a search may finish after the map has
+	 * moved on.
+	 */
+	public synchronized void put(Object algorithm, GridMap map,
+			PathQuery query, PathResult result) {
+		if (this.map == null) {
+			this.map = map;
+		} else if (this.map != map) {
+			return;
+		}
+		entries.put(new Key(algorithm, query), result);
+	}
+
+	/**
+	 * Returns the cached result of a query, solving and caching it on a
+	 * miss. The search runs outside the lock.
+	 */
+	public PathResult solve(Object key, Algorithm algorithm, GridMap map,
+			PathQuery query) {
+		PathResult result = get(key, map, query);
+		if (result == null) {
+			result = algorithm.solve(map, query);
+			put(key, map, query, result);
+		}
+		return result;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		map = null;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/** Returns the number of entries evicted to make room for others. */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/** Returns the number of entries dropped because the map changed. */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	private void update(GridMap map) {
+		if (this.map == map) {
+			return;
+		}
+		final GridMap old = this.map;
+		this.map = map;
+		if (old == null || entries.isEmpty()) {
+			return;
+		}
+		if (!selective || old.getWidth() != map.getWidth()
+				|| old.getHeight() != map.getHeight()) {
+			invalidations += entries.size();
+			entries.clear();
+			return;
+		}
+		int[] removed = new int[16];
+		int count = 0;
+		boolean added = false;
+		for (int cell = map.nextDifference(old, 0); cell >= 0; cell = map
+				.nextDifference(old, cell + 1)) {
+			if (map.isWall(cell)) {
+				added = true;
+			} else {
+				if (count == removed.length) {
+					removed = Arrays.copyOf(removed, count * 2);
+				}
+				removed[count++] = cell;
+			}
+		}
+		final Iterator<PathResult> results = entries.values().iterator();
+		while (results.hasNext()) {
+			final PathResult result = results.next();
+			if ((added && isBlocked(result)) || isShortenable(result, removed,
+					count)) {
+				results.remove();
+				invalidations++;
+			}
+		}
+	}
+
+	private boolean isBlocked(PathResult result) {
+		for (int i = 0; i < result.getLength(); i++) {
+			final int x = result.getX(i);
+			final int y = result.getY(i);
+			if (map.isWall(x, y)) {
+				return true;
+			}
+			if (i > 0) {
+				final int px = result.getX(i - 1);
+				final int py = result.getY(i - 1);
+				if (px != x && py != y
+						&& (map.isWall(px, y) || map.isWall(x, py))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isShortenable(PathResult result, int[] removed, int count) {
+		if (count == 0) {
+			return false;
+		} else if (!result.isFound()) {
+			return true;
+		}
+		final int last = result.getLength() - 1;
+		for (int i = 0; i < count; i++) {
+			final int x = map.getX(removed[i]);
+			final int y = map.getY(removed[i]);
+			// A new path either runs through the cell or takes a diagonal
+			// step past its corner, one straight step away on either side.
+			final double bound = GridMap.octile(x - result.getX(0),
+					y - result.getY(0))
+					+ GridMap.octile(result.getX(last) - x,
+							result.getY(last) - y) - 2
+					* GridMap.STRAIGHT_COST + GridMap.DIAGONAL_COST;
+			if (bound < result.getCost()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class Key {
+
+		private final Object algorithm;
+		private final PathQuery query;
+
+		Key(Object algorithm, PathQuery query) {
+			this.algorithm = algorithm;
+			this.query = query;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			} else if (o instanceof Key) {
+				Key k = (Key) o;
+				return k.algorithm.equals(algorithm) && k.query.equals(query);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return algorithm.hashCode() * 31 + query.hashCode();
+		}
+
+	}
+
+}
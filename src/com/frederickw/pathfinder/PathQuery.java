@@ -0,0 +1,63 @@
+package com.frederickw.pathfinder;
+
+/**
+ * An immutable request for a path between two cells of a {@link GridMap}.
+ */
+public final class PathQuery {
+
+	public final int sourceX;
+	public final int sourceY;
+	public final int targetX;
+	public final int targetY;
+
+	public PathQuery(int sourceX, int sourceY, int targetX, int targetY) {
+		this.sourceX = sourceX;
+		this.sourceY = sourceY;
+		this.targetX = targetX;
+		this.targetY = targetY;
+	}
+
+	public PathQuery(Node source, Node target) {
+		this(source.x, source.y, target.x, target.y);
+	}
+
+	public Node getSource() {
+		return new Node(sourceX, sourceY);
+	}
+
+	public Node getTarget() {
+		return new Node(targetX, targetY);
+	}
+
+	public boolean isSource(Node node) {
+		return node.x == sourceX && node.y == sourceY;
+	}
+
+	public boolean isTarget(Node node) {
+		return node.x == targetX && node.y == targetY;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		} else if (o instanceof PathQuery) {
+			PathQuery q = (PathQuery) o;
+			return q.sourceX == sourceX && q.sourceY == sourceY
+					&& q.targetX == targetX && q.targetY == targetY;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return (((sourceX * 31 + sourceY) * 31) + targetX) * 31 + targetY;
+	}
+
+	@Override
+	public String toString() {
+		return "(" + sourceX + ", " + sourceY + ") -> (" + targetX + ", "
+				+ targetY + ")";
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.frederickw.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of a search run to completion: the cells of the path from
+ * source to target as packed indices, its cost and the number of nodes the
+ * search expanded. A result without cells means no path exists.
+ */
+public final class PathResult {
+
+	private static final int[] NO_CELLS = new int[0];
+
+	private final int width;
+	private final int[] cells;
+	private final double cost;
+	private final int expansions;
+
+	public PathResult(GridMap map, int[] cells, double cost, int expansions) {
+		this.width = map.getWidth();
+		this.cells = cells;
+		this.cost = cost;
+		this.expansions = expansions;
+	}
+
+	public static PathResult notFound(GridMap map, int expansions) {
+		return new PathResult(map, NO_CELLS, Double.POSITIVE_INFINITY,
+				expansions);
+	}
+
+	/**
+	 * Builds a result from a chain of nodes linked through
+	 * {@link Node#parent}, which may run from either end of the path. Hops
+	 * longer than one cell must be straight or diagonal lines and are filled
+	 * in; consecutive duplicates are dropped.
+	 */
+	public static PathResult of(GridMap map, PathQuery query, Node node,
+			int expansions) {
+		if (node == null) {
+			return notFound(map, expansions);
+		}
+		int count = 0;
+		for (Node n = node; n != null; n = n.parent) {
+			count++;
+		}
+		final int[] waypoints = new int[count];
+		count = 0;
+		for (Node n = node; n != null; n = n.parent) {
+			waypoints[count++] = map.cellOf(n.x, n.y);
+		}
+		return of(map, query, waypoints, expansions);
+	}
+
+	/**
+	 * Builds a result from the cells a path passes through, from either end.
+	 * Hops longer than one cell must be straight or diagonal lines and are
+	 * filled in; consecutive duplicates are dropped.
+	 */
+	public static PathResult of(GridMap map, PathQuery query,
+			int[] waypoints, int expansions) {
+		if (waypoints.length == 0) {
+			return notFound(map, expansions);
+		}
+		int length = 1;
+		for (int i = 1; i < waypoints.length; i++) {
+			length += Math.max(
+					Math.abs(map.getX(waypoints[i]) - map.getX(waypoints[i - 1])),
+					Math.abs(map.getY(waypoints[i]) - map.getY(waypoints[i - 1])));
+		}
+		int[] cells = new int[length];
+		int count = 0;
+		cells[count++] = waypoints[0];
+		for (int i = 1; i < waypoints.length; i++) {
+			final int lastX = map.getX(waypoints[i - 1]);
+			final int lastY = map.getY(waypoints[i - 1]);
+			final int nextX = map.getX(waypoints[i]);
+			final int nextY = map.getY(waypoints[i]);
+			final int dx = Integer.signum(nextX - lastX);
+			final int dy = Integer.signum(nextY - lastY);
+			for (int x = lastX + dx, y = lastY + dy; x != nextX
+					|| y != nextY; x += dx, y += dy) {
+				cells[count++] = map.cellOf(x, y);
+			}
+			if (waypoints[i] != waypoints[i - 1]) {
+				cells[count++] = waypoints[i];
+			}
+		}
+		if (count < length) {
+			cells = Arrays.copyOf(cells, count);
+		}
+		if (cells[0] != map.cellOf(query.sourceX, query.sourceY)) {
+			for (int i = 0, j = count - 1; i < j; i++, j--) {
+				int temp = cells[i];
+				cells[i] = cells[j];
+				cells[j] = temp;
+			}
+		}
+		double cost = 0.0;
+		for (int i = 1; i < count; i++) {
+			if (map.getX(cells[i]) != map.getX(cells[i - 1])
+					&& map.getY(cells[i]) != map.getY(cells[i - 1])) {
+				cost += GridMap.DIAGONAL_COST;
+			} else {
+				cost += GridMap.STRAIGHT_COST;
+			}
+		}
+		return new PathResult(map, cells, cost, expansions);
+	}
+
+	public boolean isFound() {
+		return cells.length > 0;
+	}
+
+	public int getLength() {
+		return cells.length;
+	}
+
+	public int getCell(int index) {
+		return cells[index];
+	}
+
+	public int getX(int index) {
+		return cells[index] % width;
+	}
+
+	public int getY(int index) {
+		return cells[index] / width;
+	}
+
+	public double getCost() {
+		return cost;
+	}
+
+	public int getExpansions() {
+		return expansions;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(isFound() ? "cost " + cost : "no path");
+		sb.append(", ").append(expansions).append(" expansions");
+		if (isFound()) {
+			sb.append(": ");
+			for (int i = 0; i < cells.length; i++) {
+				if (i != 0) {
+					sb.append(" -> ");
+				}
+				sb.append('(').append(getX(i)).append(", ").append(getY(i))
+						.append(')');
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.frederickw.pathfinder;
+
+/**
+ * Observes the searches of an {@link Algorithm}, on the thread stepping
+ * them. The metrics passed to {@link #searchStarted} are filled in as the
+ * search runs and are complete when {@link #searchFinished} is called; a
+ * new instance is used for every search, so listeners may keep them.
+ */
+public interface SearchListener {
+
+	public abstract void searchStarted(SearchMetrics metrics);
+
+	public abstract void searchFinished(SearchMetrics metrics);
+
+}
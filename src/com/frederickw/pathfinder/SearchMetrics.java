@@ -0,0 +1,135 @@
+package com.frederickw.pathfinder;
+
+/**
+ * Counters for one search, filled in by the algorithm as it steps while a
+ * {@link SearchListener} is attached. The recording methods are for
+ * algorithms; listeners only read.
+ * <p>
+ * The counters are written by the thread stepping the search without
+ * synchronization, so another thread reading them live may see slightly
+ * stale values.
+ */
+public final class SearchMetrics {
+
+	private final String algorithm;
+	private final PathQuery query;
+	private long expansions = 0;
+	private long relaxations = 0;
+	private long decreaseKeys = 0;
+	private int peakOpen = 0;
+	private long steps = 0;
+	private long nanos = 0;
+	private boolean finished = false;
+	private boolean found = false;
+	private double cost = Double.NaN;
+	private int length = 0;
+
+	public SearchMetrics(String algorithm, PathQuery query) {
+		this.algorithm = algorithm;
+		this.query = query;
+	}
+
+	/** Records a successor examined during an expansion. */
+	public void relaxed() {
+		relaxations++;
+	}
+
+	/** Records a queued cell moved up for a shorter distance. */
+	public void decreasedKey() {
+		decreaseKeys++;
+	}
+
+	/**
+	 * Records a step that took {@code nanos}, after which the search had
+	 * made {@code expansions} expansions and held {@code open} cells in its
+	 * open set.
+	 */
+	public void stepped(long nanos, long expansions, int open) {
+		steps++;
+		this.nanos += nanos;
+		this.expansions = expansions;
+		if (open > peakOpen) {
+			peakOpen = open;
+		}
+	}
+
+	public void finished(PathResult result) {
+		finished = true;
+		found = result.isFound();
+		cost = found ? result.getCost() : Double.NaN;
+		length = result.getLength();
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public PathQuery getQuery() {
+		return query;
+	}
+
+	public long getExpansions() {
+		return expansions;
+	}
+
+	public long getRelaxations() {
+		return relaxations;
+	}
+
+	public long getDecreaseKeys() {
+		return decreaseKeys;
+	}
+
+	/** Returns the largest number of cells the open set held at once. */
+	public int getPeakOpen() {
+		return peakOpen;
+	}
+
+	/**
+	 * Returns the depth of a binary heap holding {@link #getPeakOpen()}
+	 * cells, the most levels a single queue operation walks.
+	 */
+	public int getPeakHeapDepth() {
+		return 32 - Integer.numberOfLeadingZeros(peakOpen);
+	}
+
+	public long getSteps() {
+		return steps;
+	}
+
+	/** Returns the time spent stepping. */
+	public long getNanos() {
+		return nanos;
+	}
+
+	public double getNanosPerStep() {
+		return steps == 0 ? 0.0 : (double) nanos / steps;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public boolean isFound() {
+		return found;
+	}
+
+	/** Returns the cost of the path found, or NaN. */
+	public double getCost() {
+		return cost;
+	}
+
+	/** Returns the number of cells on the path found. */
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return algorithm + " " + query + ": " + expansions + " expansions, "
+				+ relaxations + " relaxations, " + decreaseKeys
+				+ " decrease-keys, peak open " + peakOpen + ", " + steps
+				+ " steps in " + nanos + " ns, cost " + cost;
+	}
+
+}
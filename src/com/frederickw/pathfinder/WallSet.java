@@ -0,0 +1,131 @@
+package com.frederickw.pathfinder;
+
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.frederickw.pathfinder.struct.BitGrid;
+
+/**
+ * The set of wall cells, stored as one bit per cell. It still behaves as a
+ * {@code Set<Node>} for editing and drawing, but wall tests from the search
+ * go through {@link #contains(int, int)} and never allocate.
+ * <p>
+ * Walls outside the current map bounds are kept, so shrinking and regrowing
+ * the map brings them back.
+ */
+public final class WallSet extends AbstractSet<Node> {
+
+	private final BitGrid bits;
+	private int modCount = 0;
+
+	public WallSet(int width, int height) {
+		bits = new BitGrid(width, height);
+	}
+
+	public boolean contains(int x, int y) {
+		return bits.get(x, y);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (o instanceof Node) {
+			Node n = (Node) o;
+			return bits.get(n.x, n.y);
+		}
+		return false;
+	}
+
+	public boolean add(int x, int y) {
+		if (bits.set(x, y)) {
+			modCount++;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean add(Node node) {
+		return add(node.x, node.y);
+	}
+
+	public boolean remove(int x, int y) {
+		if (bits.clear(x, y)) {
+			modCount++;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (o instanceof Node) {
+			Node n = (Node) o;
+			return remove(n.x, n.y);
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		bits.clear();
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return bits.cardinality();
+	}
+
+	/**
+	 * Copies the walls inside {@code width} x {@code height} into a row-major
+	 * bitset with a row stride of {@code width}, as used by {@link GridMap}.
+	 */
+	public long[] toLongArray(int width, int height) {
+		return bits.toLongArray(width, height);
+	}
+
+	@Override
+	public Iterator<Node> iterator() {
+		return new Iterator<Node>() {
+
+			private int next = bits.nextSetBit(0);
+			private int last = -1;
+			private int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Node next() {
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = bits.nextSetBit(next + 1);
+				return new Node(bits.x(last), bits.y(last));
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+				WallSet.this.remove(bits.x(last), bits.y(last));
+				expectedModCount = modCount;
+				last = -1;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.frederickw.pathfinder;
+
+/**
+ * Wall bits of a {@link GridMap} kept outside the heap, such as in a mapped
+ * file. Cells are packed indices as in {@link GridMap}. Implementations are
+ * read concurrently by every search sharing the map.
+ */
+public interface WallSource {
+
+	public abstract boolean isWall(int cell);
+
+	/**
+	 * Returns the walls of cells {@code 64 * index} up to
+	 * {@code 64 * index + 63}, the first in the lowest bit. Bits past the
+	 * last cell are zero.
+	 */
+	public abstract long getWord(int index);
+
+}
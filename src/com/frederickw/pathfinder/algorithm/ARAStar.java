@@ -0,0 +1,350 @@
+package com.frederickw.pathfinder.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.Node;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.algorithm.AStar.Heuristic;
+import com.frederickw.pathfinder.struct.IntBinaryHeap;
+
+/**
+ * Anytime repairing A* (ARA*). A first pass runs weighted A* with a large
+ * weight and finds a path quickly; each further pass lowers the weight and
+ * improves the path, until a pass with weight one makes it the shortest.
+ * Distances are kept between passes: a pass only expands the cells still
+ * open and the ones whose distance dropped after they were closed.
+ * <p>
+ * Each path found is at most {@link #getBound()} times longer than the
+ * shortest, given an admissible heuristic. {@link #solve(GridMap, PathQuery,
+ * long)} returns the best path found by a deadline.
+ */
+public class ARAStar extends AbstractAlgorithm {
+
+	public static final double DEFAULT_WEIGHT = 3.0;
+	public static final double DEFAULT_DECREMENT = 0.5;
+	// Steps between looks at the clock when solving to a deadline.
+	private static final int CLOCK_INTERVAL = 64;
+
+	private final Heuristic heuristic;
+	private final double initialWeight;
+	private final double decrement;
+
+	private final SearchSpace space = new SearchSpace();
+	private final IntBinaryHeap openQueue = new IntBinaryHeap();
+	private final int[] neighbours = new int[GridMap.MAX_NEIGHBOURS];
+	private final double[] costs = new double[GridMap.MAX_NEIGHBOURS];
+	// Cells whose distance dropped after they were closed in this pass.
+	private int[] inconsistent = new int[16];
+	private int inconsistentCount = 0;
+
+	private GridMap map = null;
+	private PathQuery query = null;
+	private int target = -1;
+	private int current = -1;
+	private double weight = 0.0;
+	private boolean done = false;
+	private int[] path = null;
+	private double bound = Double.POSITIVE_INFINITY;
+	private int passes = 0;
+	private int expansions = 0;
+	// Whether the search is solving to a deadline.
+	private boolean anytime = false;
+
+	public ARAStar(Heuristic heuristic) {
+		this(heuristic, DEFAULT_WEIGHT, DEFAULT_DECREMENT);
+	}
+
+	/**
+	 * Creates a search whose first pass uses {@code initialWeight} and whose
+	 * weight drops by {@code decrement} after each pass.
+	 */
+	public ARAStar(Heuristic heuristic, double initialWeight, double decrement) {
+		if (!(initialWeight >= 1.0) || !(decrement > 0.0)) {
+			throw new IllegalArgumentException("invalid weights");
+		}
+		this.heuristic = heuristic;
+		this.initialWeight = initialWeight;
+		this.decrement = decrement;
+	}
+
+	/** Returns the weight of the pass in progress. */
+	public double getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Returns how many times longer than the shortest the best path found so
+	 * far may be, or infinity if none has been found. It is kept after
+	 * {@link #reset()}, so it can be read after solving.
+	 */
+	public double getBound() {
+		return bound;
+	}
+
+	/** Returns the number of passes that have finished. */
+	public int getPasses() {
+		return passes;
+	}
+
+	@Override
+	protected void start(GridMap map, PathQuery query) {
+		this.map = map;
+		this.query = query;
+		space.reset(map.getCells());
+		target = map.cellOf(query.targetX, query.targetY);
+		weight = initialWeight;
+		bound = Double.POSITIVE_INFINITY;
+		final int source = map.cellOf(query.sourceX, query.sourceY);
+		space.open(source, 0.0, -1);
+		push(source);
+	}
+
+	@Override
+	protected boolean advance() {
+		if (done) {
+			return true;
+		}
+		if (openQueue.isEmpty()
+				|| (space.isSeen(target) && space.getDistance(target) <= openQueue
+						.peekKey())) {
+			return finishPass();
+		}
+		current = openQueue.poll();
+		space.close(current);
+		expansions++;
+		final double distance = space.getDistance(current);
+		final int count = map.getNeighbours(current, neighbours, costs);
+		for (int i = 0; i < count; i++) {
+			relax(current, neighbours[i], distance + costs[i]);
+		}
+		return false;
+	}
+
+	private void relax(int parent, int cell, double distance) {
+		if (metrics != null) {
+			metrics.relaxed();
+		}
+		switch (space.getState(cell)) {
+		case SearchSpace.UNSEEN:
+			space.open(cell, distance, parent);
+			push(cell);
+			break;
+		case SearchSpace.OPEN:
+			if (distance < space.getDistance(cell)) {
+				space.open(cell, distance, parent);
+				openQueue.decreaseKey(cell, key(cell), -distance);
+				if (metrics != null) {
+					metrics.decreasedKey();
+				}
+			}
+			break;
+		case SearchSpace.RETIRED:
+			if (distance < space.getDistance(cell)) {
+				space.open(cell, distance, parent);
+				push(cell);
+			}
+			break;
+		case SearchSpace.CLOSED:
+			if (distance < space.getDistance(cell)) {
+				space.open(cell, distance, parent);
+				space.close(cell);
+				if (inconsistentCount == inconsistent.length) {
+					inconsistent = Arrays.copyOf(inconsistent,
+							inconsistentCount * 2);
+				}
+				inconsistent[inconsistentCount++] = cell;
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Records the path of the pass just finished and starts the next one
+	 * with a lower weight, if any. Returns whether the search is over.
+	 */
+	private boolean finishPass() {
+		current = -1;
+		if (!space.isSeen(target)) {
+			done = true;
+			return true;
+		}
+		passes++;
+		path = space.getPath(target);
+		bound = Math.min(weight, space.getDistance(target) / lowerBound());
+		if (weight <= 1.0) {
+			done = true;
+			return true;
+		}
+		weight = Math.max(1.0, weight - decrement);
+		// Cells closed in this pass may be expanded again in the next.
+		for (int i = 0; i < space.size(); i++) {
+			final int cell = space.getCell(i);
+			if (space.isClosed(cell)) {
+				space.retire(cell);
+			}
+		}
+		for (int i = 0; i < inconsistentCount; i++) {
+			final int cell = inconsistent[i];
+			if (!space.isOpen(cell)) {
+				space.open(cell, space.getDistance(cell),
+						space.getParent(cell));
+				push(cell);
+			}
+		}
+		inconsistentCount = 0;
+		for (int i = 0; i < space.size(); i++) {
+			final int cell = space.getCell(i);
+			if (openQueue.contains(cell)) {
+				openQueue.update(cell, key(cell), -space.getDistance(cell));
+			}
+		}
+		return false;
+	}
+
+	// The least distance plus estimate of the cells a later pass may expand,
+	// which no path can beat.
+	private double lowerBound() {
+		double min = space.getDistance(target);
+		for (int i = 0; i < space.size(); i++) {
+			final int cell = space.getCell(i);
+			if (space.isOpen(cell)) {
+				min = Math.min(min, space.getDistance(cell) + estimate(cell));
+			}
+		}
+		for (int i = 0; i < inconsistentCount; i++) {
+			final int cell = inconsistent[i];
+			min = Math.min(min, space.getDistance(cell) + estimate(cell));
+		}
+		return min;
+	}
+
+	private void push(int cell) {
+		openQueue.add(cell, key(cell), -space.getDistance(cell));
+	}
+
+	private double key(int cell) {
+		return space.getDistance(cell) + weight * estimate(cell);
+	}
+
+	private double estimate(int cell) {
+		return heuristic.calculate(map.getX(cell), map.getY(cell),
+				query.targetX, query.targetY);
+	}
+
+	/**
+	 * Searches until the deadline, a {@link System#nanoTime()} value, and
+	 * returns the best path found. It does not stop before the first pass
+	 * has finished, so a path is returned whenever one exists, unless the
+	 * search is cancelled; then it returns the best path found so far, if
+	 * any.
+	 */
+	public PathResult solve(GridMap map, PathQuery query, long deadline) {
+		reset();
+		init(map, query);
+		anytime = true;
+		int steps = 0;
+		while (!step()) {
+			if (passes > 0 && ++steps == CLOCK_INTERVAL) {
+				steps = 0;
+				if (System.nanoTime() - deadline >= 0) {
+					break;
+				}
+			}
+		}
+		final PathResult result = getResult(map, query);
+		// The search may have stopped at the deadline, short of finishing.
+		finished(result);
+		reset();
+		return result;
+	}
+
+	@Override
+	public Collection<Node> getUnvisitedNodes() {
+		return space.getNodes(map, SearchSpace.OPEN);
+	}
+
+	@Override
+	public Collection<Node> getVisitedNodes() {
+		final List<Node> nodes = new ArrayList<Node>();
+		if (map != null) {
+			space.collect(map, SearchSpace.CLOSED, nodes);
+			space.collect(map, SearchSpace.RETIRED, nodes);
+		}
+		return nodes;
+	}
+
+	/**
+	 * The first path is the best found so far; the second, while a pass is
+	 * running, leads to the cell being expanded.
+	 */
+	@Override
+	public Node[] getPaths() {
+		if (map == null) {
+			return new Node[] { null };
+		}
+		Node best = null;
+		if (path != null) {
+			for (int cell : path) {
+				final Node node = new Node(map.getX(cell), map.getY(cell));
+				node.parent = best;
+				best = node;
+			}
+		}
+		if (done) {
+			return new Node[] { best };
+		}
+		return new Node[] { best, space.toNode(map, current) };
+	}
+
+	@Override
+	protected int getExpansions() {
+		return expansions;
+	}
+
+	@Override
+	protected SearchSpace[] getSpaces() {
+		return new SearchSpace[] { space };
+	}
+
+	@Override
+	protected int getOpenSize() {
+		return openQueue.size();
+	}
+
+	@Override
+	protected PathResult getResult(GridMap map, PathQuery query) {
+		if (path == null) {
+			return PathResult.notFound(map, expansions);
+		}
+		return PathResult.of(map, query, path, expansions);
+	}
+
+	@Override
+	protected PathResult getCancelledResult(GridMap map, PathQuery query) {
+		return anytime ? getResult(map, query) : super.getCancelledResult(map,
+				query);
+	}
+
+	@Override
+	public void reset() {
+		space.clear();
+		openQueue.clear();
+		inconsistentCount = 0;
+		map = null;
+		query = null;
+		target = -1;
+		current = -1;
+		weight = 0.0;
+		done = false;
+		path = null;
+		passes = 0;
+		expansions = 0;
+		anytime = false;
+	}
+
+}
@@ -1,185 +1,98 @@
 package com.frederickw.pathfinder.algorithm;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-
-import com.frederickw.pathfinder.Algorithm;
-import com.frederickw.pathfinder.MapData;
+import com.frederickw.pathfinder.GridMap;
 import com.frederickw.pathfinder.Node;
-import com.frederickw.pathfinder.struct.BinaryHeap;
 
-public class AStar implements Algorithm {
+/**
+ * A* over the neighbours of each cell. With a weight above one the
+ * heuristic is scaled by it, which expands fewer cells for paths at most
+ * that many times longer than the shortest, given an admissible heuristic.
+ */
+public class AStar extends BestFirstSearch {
 
 	public static final Heuristic MANHATTAN_DISTANCE = new ManhattanDistance();
 	public static final Heuristic CHEBYSHEV_DISTANCE = new ChebyshevDistance();
 	public static final Heuristic EUCLIDEAN_DISTANCE = new EuclideanDistance();
+	/** The exact distance on an empty map, as {@link GridMap#octile}. */
+	public static final Heuristic OCTILE_DISTANCE = new OctileDistance();
 
 	private final Heuristic heuristic;
-
-	private final BinaryHeap<AStarNode> openQueue = new BinaryHeap<AStarNode>();
-	private final Set<AStarNode> openSet = Collections
-			.synchronizedSet(new HashSet<AStarNode>());
-	private final Set<AStarNode> closedSet = Collections
-			.synchronizedSet(new HashSet<AStarNode>());
-
-	private AStarNode current = null;
+	private final double weight;
 
 	public AStar(Heuristic heuristic) {
-		this.heuristic = heuristic;
+		this(heuristic, 1.0);
 	}
 
-	@Override
-	public void init() {
-		AStarNode source = new AStarNode(MapData.source);
-		openQueue.add(source);
-		openSet.add(source);
-	}
-
-	@Override
-	public boolean step() {
-		if (!openQueue.isEmpty()) {
-			current = openQueue.poll();
-			openSet.remove(current);
-			closedSet.add(current);
-			if (current.equals(MapData.target)) {
-				return true;
-			}
-			for (final AStarNode next : MapData.getTraversable(current)) {
-				if (!closedSet.contains(next)) {
-					final double dist = current.distance
-							+ distance(current, next);
-					if (!openSet.contains(next)) {
-						next.parent = current;
-						next.distance = dist;
-						next.cost = dist + heuristic.calculate(next);
-						openQueue.add(next);
-						openSet.add(next);
-					} else {
-						final AStarNode old = getNode(openSet, next);
-						if (dist < old.distance) {
-							old.parent = current;
-							old.distance = dist;
-							old.cost = dist + heuristic.calculate(next);
-							openQueue.resort(old);
-						}
-					}
-				}
-			}
-			return false;
-		} else {
-			current = null;
-			return true;
-		}
+	public AStar(Heuristic heuristic, CostMode mode) {
+		this(heuristic, 1.0, mode);
 	}
 
-	private double distance(final Node start, final Node end) {
-		if (start.x != end.x && start.y != end.y) {
-			return 1.414213562373;
-		} else {
-			return 1.0;
-		}
+	public AStar(Heuristic heuristic, double weight) {
+		this(heuristic, weight, CostMode.EXACT);
 	}
 
-	private AStarNode getNode(Set<AStarNode> nodes, AStarNode n) {
-		for (AStarNode node : nodes) {
-			if (node.equals(n)) {
-				return node;
-			}
+	public AStar(Heuristic heuristic, double weight, CostMode mode) {
+		super(mode);
+		if (!(weight >= 1.0)) {
+			throw new IllegalArgumentException("invalid weight");
 		}
-		return null;
-	}
-
-	@Override
-	public Collection<AStarNode> getUnvisitedNodes() {
-		return openSet;
-	}
-
-	@Override
-	public Collection<AStarNode> getVisitedNodes() {
-		return closedSet;
+		this.heuristic = heuristic;
+		this.weight = weight;
 	}
 
-	@Override
-	public Node[] getPaths() {
-		return new Node[] { current };
+	public double getWeight() {
+		return weight;
 	}
 
 	@Override
-	public void reset() {
-		openQueue.clear();
-		openSet.clear();
-		closedSet.clear();
-		current = null;
+	protected double estimate(int cell) {
+		return weight
+				* heuristic.calculate(map.getX(cell), map.getY(cell),
+						query.targetX, query.targetY);
 	}
 
-	private class AStarNode extends Node {
-
-		double cost = 0.0;
-
-		public AStarNode(int x, int y) {
-			super(x, y);
-		}
-
-		public AStarNode(Node node) {
-			super(node);
-		}
+	public static abstract class Heuristic {
 
-		@Override
-		public AStarNode newNode(int x, int y) {
-			return new AStarNode(x, y);
+		public double calculate(Node current, Node target) {
+			return calculate(current.x, current.y, target.x, target.y);
 		}
 
-		@Override
-		public int compareTo(Node node) {
-			double difference = cost - ((AStarNode) node).cost;
-			if (difference < 0) {
-				return -1;
-			} else if (difference > 0) {
-				return 1;
-			} else {
-				return 0;
-			}
-		}
+		public abstract double calculate(int x, int y, int targetX, int targetY);
 
 	}
 
-	public static abstract class Heuristic {
+	private static class ManhattanDistance extends Heuristic {
 
-		public final double calculate(Node current) {
-			return calculate(current, MapData.target);
+		@Override
+		public double calculate(int x, int y, int targetX, int targetY) {
+			return Math.abs(x - targetX) + Math.abs(y - targetY);
 		}
 
-		protected abstract double calculate(Node current, Node target);
-
 	}
 
-	private static class ManhattanDistance extends Heuristic {
+	private static class ChebyshevDistance extends Heuristic {
 
 		@Override
-		protected double calculate(Node current, Node target) {
-			return Math.abs(current.x - target.x)
-					+ Math.abs(current.y - target.y);
+		public double calculate(int x, int y, int targetX, int targetY) {
+			return Math.max(Math.abs(x - targetX), Math.abs(y - targetY));
 		}
 
 	}
 
-	private static class ChebyshevDistance extends Heuristic {
+	private static class EuclideanDistance extends Heuristic {
 
 		@Override
-		protected double calculate(Node current, Node target) {
-			return Math.max(Math.abs(current.x - target.x),
-					Math.abs(current.y - target.y));
+		public double calculate(int x, int y, int targetX, int targetY) {
+			return Math.hypot(x - targetX, y - targetY);
 		}
 
 	}
 
-	private static class EuclideanDistance extends Heuristic {
+	private static class OctileDistance extends Heuristic {
 
 		@Override
-		protected double calculate(Node current, Node target) {
-			return Math.hypot(current.x - target.x, current.y - target.y);
+		public double calculate(int x, int y, int targetX, int targetY) {
+			return GridMap.octile(x - targetX, y - targetY);
 		}
 
 	}
@@ -0,0 +1,236 @@
+package com.frederickw.pathfinder.algorithm;
+
+import com.frederickw.pathfinder.Algorithm;
+import com.frederickw.pathfinder.CellListener;
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.SearchListener;
+import com.frederickw.pathfinder.SearchMetrics;
+
+/**
+ * Base class for step-wise searches, which implement {@link #start} and
+ * {@link #advance()}. Once {@link #advance()} has returned {@code true}, the
+ * first node of {@link #getPaths()} must be one end of the path found, or
+ * {@code null} if there is none.
+ * <p>
+ * While a {@link SearchListener} is attached, every step is timed and
+ * {@link #metrics} holds the counters of the search; subclasses record
+ * relaxations and decrease-key calls in it if it is not {@code null}.
+ * Without a listener, it is {@code null} and a step costs one test more.
+ * <p>
+ * A {@link CellListener} is told after each step about the cells changed in
+ * the search spaces returned by {@link #getSpaces()}.
+ */
+public abstract class AbstractAlgorithm implements Algorithm {
+
+	private static final SearchSpace[] NO_SPACES = new SearchSpace[0];
+
+	private SearchListener listener = null;
+	private CellListener cellListener = null;
+	private SearchSpace[] spaces = NO_SPACES;
+	// Whether a step has anything to do besides advancing.
+	private boolean observed = false;
+	protected SearchMetrics metrics = null;
+	private GridMap searchMap = null;
+	private PathQuery searchQuery = null;
+	private volatile boolean cancelled = false;
+
+	/** Starts a search; see {@link #init}. */
+	protected abstract void start(GridMap map, PathQuery query);
+
+	/** Makes one step of the search; see {@link #step()}. */
+	protected abstract boolean advance();
+
+	@Override
+	public final void init(GridMap map, PathQuery query) {
+		cancelled = false;
+		searchMap = map;
+		searchQuery = query;
+		if (listener != null) {
+			metrics = new SearchMetrics(getClass().getSimpleName(), query);
+			listener.searchStarted(metrics);
+		} else {
+			metrics = null;
+		}
+		if (cellListener != null) {
+			for (SearchSpace space : spaces) {
+				space.clearJournal();
+			}
+			cellListener.cellsCleared();
+		}
+		start(map, query);
+	}
+
+	/**
+	 * Makes one step of the search and returns whether it is over. Once the
+	 * search is cancelled, it returns {@code true} without stepping.
+	 */
+	@Override
+	public final boolean step() {
+		if (cancelled) {
+			if (observed) {
+				finish(true);
+			}
+			return true;
+		}
+		if (!observed) {
+			return advance();
+		}
+		final SearchMetrics metrics = this.metrics;
+		final long start = metrics != null ? System.nanoTime() : 0;
+		final boolean done = advance();
+		if (metrics != null) {
+			metrics.stepped(System.nanoTime() - start, getExpansions(),
+					getOpenSize());
+		}
+		if (cellListener != null) {
+			publish();
+		}
+		if (done) {
+			finish(false);
+		}
+		return done;
+	}
+
+	private void finish(boolean cancelled) {
+		if (metrics != null && !metrics.isFinished() && listener != null) {
+			finished(cancelled ? getCancelledResult(searchMap, searchQuery)
+					: getResult(searchMap, searchQuery));
+		}
+	}
+
+	/**
+	 * Returns the result reported for a search cancelled before it finished;
+	 * by default, that no path was found.
+	 */
+	protected PathResult getCancelledResult(GridMap map, PathQuery query) {
+		return PathResult.notFound(map, getExpansions());
+	}
+
+	/**
+	 * Tells the listener, once, that the search ended with {@code result},
+	 * for searches that finish other than by stepping.
+	 */
+	protected final void finished(PathResult result) {
+		final SearchMetrics metrics = this.metrics;
+		final SearchListener listener = this.listener;
+		if (metrics != null && !metrics.isFinished() && listener != null) {
+			metrics.finished(result);
+			listener.searchFinished(metrics);
+		}
+	}
+
+	// A cell is reported as the last space to have seen it holds it, so a
+	// space forgetting a cell does not hide it in another.
+	private void publish() {
+		for (SearchSpace journal : spaces) {
+			final int count = journal.getJournalSize();
+			for (int i = 0; i < count; i++) {
+				final int cell = journal.getJournalCell(i);
+				byte state = SearchSpace.UNSEEN;
+				int parent = -1;
+				for (SearchSpace space : spaces) {
+					if (space.size() > 0 && space.isSeen(cell)) {
+						state = space.getState(cell);
+						parent = space.getParent(cell);
+					}
+				}
+				if (state == SearchSpace.RETIRED) {
+					state = CellListener.CLOSED;
+				}
+				cellListener.cellChanged(searchMap.getX(cell),
+						searchMap.getY(cell), state,
+						parent >= 0 ? searchMap.getX(parent) : -1,
+						parent >= 0 ? searchMap.getY(parent) : -1);
+			}
+			journal.clearJournal();
+		}
+	}
+
+	@Override
+	public final boolean step(int steps) {
+		for (int i = 0; i < steps; i++) {
+			if (step()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public final boolean stepUntil(long deadline) {
+		do {
+			if (step()) {
+				return true;
+			}
+		} while (System.nanoTime() - deadline < 0);
+		return false;
+	}
+
+	@Override
+	public void cancel() {
+		cancelled = true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public void setListener(SearchListener listener) {
+		this.listener = listener;
+		observed = listener != null || cellListener != null;
+	}
+
+	@Override
+	public void setCellListener(CellListener listener) {
+		cellListener = listener;
+		spaces = getSpaces();
+		for (SearchSpace space : spaces) {
+			space.setJournaling(listener != null);
+		}
+		observed = this.listener != null || cellListener != null;
+	}
+
+	/**
+	 * Returns the search spaces whose changes are told to a
+	 * {@link CellListener}, later ones last.
+	 */
+	protected SearchSpace[] getSpaces() {
+		return NO_SPACES;
+	}
+
+	/** Returns the number of cells in the open set. */
+	protected int getOpenSize() {
+		return 0;
+	}
+
+	/**
+	 * Returns the number of nodes expanded since the last {@link #init}.
+	 */
+	protected abstract int getExpansions();
+
+	/**
+	 * Returns the result of the search once {@link #step()} has returned
+	 * {@code true}. Searches that keep their state outside of nodes override
+	 * this to avoid building the node chain.
+	 */
+	protected PathResult getResult(GridMap map, PathQuery query) {
+		return PathResult.of(map, query, getPaths()[0], getExpansions());
+	}
+
+	@Override
+	public PathResult solve(GridMap map, PathQuery query) {
+		reset();
+		init(map, query);
+		while (!step()) {
+		}
+		PathResult result = cancelled ? PathResult.notFound(map, 0)
+				: getResult(map, query);
+		reset();
+		return result;
+	}
+
+}
@@ -2,184 +2,369 @@ package com.frederickw.pathfinder.algorithm;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-import com.frederickw.pathfinder.Algorithm;
-import com.frederickw.pathfinder.MapData;
+import com.frederickw.pathfinder.GridMap;
 import com.frederickw.pathfinder.Node;
-import com.frederickw.pathfinder.struct.BinaryHeap;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.SearchMetrics;
+import com.frederickw.pathfinder.struct.IntBinaryHeap;
 
-public class BBFS implements Algorithm {
+/**
+ * Bidirectional search: a Dijkstra search from each end, stepped in turn,
+ * that stops as soon as one side takes a cell from its queue that the other
+ * has already seen. Paths are not always the shortest.
+ * <p>
+ * Given an {@link Executor}, {@link #solve} runs the target side on it while
+ * the calling thread runs the source side. Each side publishes the cells it
+ * has seen in an atomic bitset the other reads without locking, and the
+ * first to find a meeting cell claims it with a compare-and-set. Whether a
+ * path is found is the same as when stepping; which cell the sides meet at,
+ * and so the path, depends on how far each has got. If the executor is busy
+ * the source side carries on alone, as it meets the target there. Stepping
+ * is always sequential. A parallel search is reported to a
+ * {@link com.frederickw.pathfinder.SearchListener} with its outcome but
+ * without counters, as the two sides cannot share them.
+ */
+public class BBFS extends AbstractAlgorithm {
 
-	private final BinaryHeap<Node> unvisitedQueueS = new BinaryHeap<Node>();
-	private final Set<Node> unvisitedSetS = Collections
-			.synchronizedSet(new HashSet<Node>());
-	private final Set<Node> visitedSetS = Collections
-			.synchronizedSet(new HashSet<Node>());
+	private static final int SEARCHING = -1;
+	private static final int NO_PATH = -2;
 
-	private final BinaryHeap<Node> unvisitedQueueT = new BinaryHeap<Node>();
-	private final Set<Node> unvisitedSetT = Collections
-			.synchronizedSet(new HashSet<Node>());
-	private final Set<Node> visitedSetT = Collections
-			.synchronizedSet(new HashSet<Node>());
+	private final SearchSpace spaceS = new SearchSpace();
+	private final IntBinaryHeap unvisitedQueueS = new IntBinaryHeap();
 
-	private Node currentS = null;
-	private Node currentT = null;
+	private final SearchSpace spaceT = new SearchSpace();
+	private final IntBinaryHeap unvisitedQueueT = new IntBinaryHeap();
+	private final int[] neighbours = new int[GridMap.MAX_NEIGHBOURS];
+	private final double[] costs = new double[GridMap.MAX_NEIGHBOURS];
 
-	private Node path = null;
+	private final Executor executor;
+	private final int[] neighboursT = new int[GridMap.MAX_NEIGHBOURS];
+	private final double[] costsT = new double[GridMap.MAX_NEIGHBOURS];
+	private AtomicLongArray seenS = null;
+	private AtomicLongArray seenT = null;
+	private final AtomicInteger meet = new AtomicInteger(SEARCHING);
+
+	private GridMap map = null;
+	private int currentS = -1;
+	private int currentT = -1;
+
+	private int[] path = null;
+	private int expansions = 0;
+
+	public BBFS() {
+		this(null);
+	}
+
+	/**
+	 * Creates a search that runs the two sides of {@link #solve} in parallel,
+	 * the target side on {@code executor}, or in turn if it is {@code null}.
+	 */
+	public BBFS(Executor executor) {
+		this.executor = executor;
+	}
 
 	@Override
-	public void init() {
-		Node source = new Node(MapData.source);
-		unvisitedQueueS.add(source);
-		unvisitedSetS.add(source);
-		Node target = new Node(MapData.target);
-		unvisitedQueueT.add(target);
-		unvisitedSetT.add(target);
+	protected void start(GridMap map, PathQuery query) {
+		this.map = map;
+		spaceS.reset(map.getCells());
+		spaceT.reset(map.getCells());
+		final int source = map.cellOf(query.sourceX, query.sourceY);
+		spaceS.open(source, 0.0, -1);
+		unvisitedQueueS.add(source, 0.0);
+		final int target = map.cellOf(query.targetX, query.targetY);
+		spaceT.open(target, 0.0, -1);
+		unvisitedQueueT.add(target, 0.0);
 	}
 
 	@Override
-	public boolean step() {
+	protected boolean advance() {
 		if (!unvisitedQueueS.isEmpty() && !unvisitedQueueT.isEmpty()) {
 			currentS = unvisitedQueueS.poll();
-			if (unvisitedSetT.contains(currentS)) {
-				path = makePath(currentS, unvisitedSetT);
-				return true;
-			} else if (visitedSetT.contains(currentS)) {
-				path = makePath(currentS, visitedSetT);
+			if (spaceT.isSeen(currentS)) {
+				path = makePath(currentS);
 				return true;
 			}
-			unvisitedSetS.remove(currentS);
-			visitedSetS.add(currentS);
-			for (final Node next : MapData.getTraversable(currentS)) {
-				if (!visitedSetS.contains(next)) {
-					final double dist = currentS.distance
-							+ distance(currentS, next);
-					if (!unvisitedSetS.contains(next)) {
-						next.parent = currentS;
-						next.distance = dist;
-						unvisitedQueueS.add(next);
-						unvisitedSetS.add(next);
-					} else {
-						final Node old = getNode(unvisitedSetS, next);
-						if (dist < old.distance) {
-							old.parent = currentS;
-							old.distance = dist;
-							unvisitedQueueS.resort(old);
-						}
-					}
-				}
-			}
+			spaceS.close(currentS);
+			expansions++;
+			expand(spaceS, unvisitedQueueS, currentS, null, neighbours, costs);
 
 			currentT = unvisitedQueueT.poll();
-			if (unvisitedSetS.contains(currentT)) {
-				path = makePath(currentT, unvisitedSetS);
-				return true;
-			} else if (visitedSetS.contains(currentT)) {
-				path = makePath(currentT, visitedSetS);
+			if (spaceS.isSeen(currentT)) {
+				path = makePath(currentT);
 				return true;
 			}
-			unvisitedSetT.remove(currentT);
-			visitedSetT.add(currentT);
-			for (final Node next : MapData.getTraversable(currentT)) {
-				if (!visitedSetT.contains(next)) {
-					final double dist = currentT.distance
-							+ distance(currentT, next);
-					if (!unvisitedSetT.contains(next)) {
-						next.parent = currentT;
-						next.distance = dist;
-						unvisitedQueueT.add(next);
-						unvisitedSetT.add(next);
-					} else {
-						final Node old = getNode(unvisitedSetT, next);
-						if (dist < old.distance) {
-							old.parent = currentT;
-							old.distance = dist;
-							unvisitedQueueT.resort(old);
-						}
-					}
-				}
-			}
+			spaceT.close(currentT);
+			expansions++;
+			expand(spaceT, unvisitedQueueT, currentT, null, neighbours, costs);
 
 			return false;
 		} else {
-			currentS = null;
-			currentT = null;
+			currentS = -1;
+			currentT = -1;
 			return true;
 		}
 	}
 
-	private Node makePath(Node intersect, Set<Node> set) {
-		Node n = getNode(set, intersect);
-		Node p = n;
-		Node c = intersect;
-		do {
-			Node temp = c.parent;
-			c.parent = p;
-			p = c;
-			c = temp;
-		} while (c != null);
-		return p;
+	/**
+	 * Relaxes the neighbours of a cell, marking the ones seen for the first
+	 * time in {@code seen} unless it is {@code null}.
+	 */
+	private void expand(SearchSpace space, IntBinaryHeap queue, int current,
+			AtomicLongArray seen, int[] neighbours, double[] costs) {
+		final double distance = space.getDistance(current);
+		final int count = map.getNeighbours(current, neighbours, costs);
+		for (int i = 0; i < count; i++) {
+			final int cell = neighbours[i];
+			final double dist = distance + costs[i];
+			if (metrics != null) {
+				metrics.relaxed();
+			}
+			switch (space.getState(cell)) {
+			case SearchSpace.UNSEEN:
+				space.open(cell, dist, current);
+				queue.add(cell, dist);
+				if (seen != null) {
+					mark(seen, cell);
+				}
+				break;
+			case SearchSpace.OPEN:
+				if (dist < space.getDistance(cell)) {
+					space.open(cell, dist, current);
+					queue.decreaseKey(cell, dist);
+					if (metrics != null) {
+						metrics.decreasedKey();
+					}
+				}
+				break;
+			}
+		}
 	}
 
-	private double distance(final Node start, final Node end) {
-		if (start.x != end.x && start.y != end.y) {
-			return 1.414213562373;
-		} else {
-			return 1.0;
+	@Override
+	public PathResult solve(GridMap map, PathQuery query) {
+		if (executor == null) {
+			return super.solve(map, query);
 		}
+		reset();
+		init(map, query);
+		// The two sides cannot share the counters, so only the outcome is
+		// recorded.
+		final SearchMetrics measured = metrics;
+		metrics = null;
+		final int words = (map.getCells() + 63) >>> 6;
+		if (seenS == null || seenS.length() < words) {
+			seenS = new AtomicLongArray(words);
+			seenT = new AtomicLongArray(words);
+		}
+		mark(seenS, spaceS.getCell(0));
+		mark(seenT, spaceT.getCell(0));
+		meet.set(SEARCHING);
+		final TargetSide side = new TargetSide();
+		executor.execute(side);
+		expansions += search(spaceS, unvisitedQueueS, seenS, seenT, neighbours,
+				costs);
+		side.join();
+		final int cell = meet.get();
+		if (cell >= 0 && !isCancelled()) {
+			path = makePath(cell);
+		}
+		final PathResult result = getResult(map, query);
+		metrics = measured;
+		finished(result);
+		unmark(spaceS, seenS);
+		unmark(spaceT, seenT);
+		reset();
+		return result;
 	}
 
-	private Node getNode(Set<Node> nodes, Node n) {
-		for (Node node : nodes) {
-			if (node.equals(n)) {
-				return node;
+	/**
+	 * Runs one side until either side meets the other or runs out of cells,
+	 * or the search is cancelled, and returns the number of cells it
+	 * expanded.
+	 */
+	private int search(SearchSpace space, IntBinaryHeap queue,
+			AtomicLongArray seen, AtomicLongArray other, int[] neighbours,
+			double[] costs) {
+		int count = 0;
+		while (meet.get() == SEARCHING && !isCancelled()) {
+			if (queue.isEmpty()) {
+				meet.compareAndSet(SEARCHING, NO_PATH);
+				break;
 			}
+			final int current = queue.poll();
+			if (isMarked(other, current)) {
+				meet.compareAndSet(SEARCHING, current);
+				break;
+			}
+			space.close(current);
+			count++;
+			expand(space, queue, current, seen, neighbours, costs);
 		}
-		return null;
+		return count;
+	}
+
+	// Only the side owning a bitset writes to it, so no compare-and-set.
+	private static void mark(AtomicLongArray seen, int cell) {
+		final int w = cell >>> 6;
+		seen.lazySet(w, seen.get(w) | 1L << cell);
+	}
+
+	private static boolean isMarked(AtomicLongArray seen, int cell) {
+		return (seen.get(cell >>> 6) & 1L << cell) != 0;
+	}
+
+	private static void unmark(SearchSpace space, AtomicLongArray seen) {
+		for (int i = 0; i < space.size(); i++) {
+			seen.set(space.getCell(i) >>> 6, 0L);
+		}
+	}
+
+	/**
+	 * The target side of a parallel search. If it has not started by the time
+	 * the source side is done, it is cancelled instead of waited for.
+	 */
+	private final class TargetSide implements Runnable {
+
+		private static final int PENDING = 0;
+		private static final int RUNNING = 1;
+		private static final int CANCELLED = 2;
+
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+		private final CountDownLatch done = new CountDownLatch(1);
+		private int expanded = 0;
+
+		@Override
+		public void run() {
+			if (state.compareAndSet(PENDING, RUNNING)) {
+				try {
+					expanded = search(spaceT, unvisitedQueueT, seenT, seenS,
+							neighboursT, costsT);
+				} finally {
+					done.countDown();
+				}
+			}
+		}
+
+		void join() {
+			if (!state.compareAndSet(PENDING, CANCELLED)) {
+				boolean interrupted = false;
+				for (;;) {
+					try {
+						done.await();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				expansions += expanded;
+			}
+		}
+
+	}
+
+	/**
+	 * Joins the two trees at a cell both have seen into the cells of the
+	 * path from source to target.
+	 */
+	private int[] makePath(int intersect) {
+		int length = 0;
+		for (int c = spaceT.getParent(intersect); c >= 0; c = spaceT
+				.getParent(c)) {
+			length++;
+		}
+		final int[] fromSource = spaceS.getPath(intersect);
+		final int[] cells = new int[fromSource.length + length];
+		System.arraycopy(fromSource, 0, cells, 0, fromSource.length);
+		int i = fromSource.length;
+		for (int c = spaceT.getParent(intersect); c >= 0; c = spaceT
+				.getParent(c)) {
+			cells[i++] = c;
+		}
+		return cells;
 	}
 
 	@Override
 	public Collection<? extends Node> getUnvisitedNodes() {
-		List<Node> nodes = new ArrayList<Node>(unvisitedSetS.size()
-				+ unvisitedSetT.size());
-		nodes.addAll(unvisitedSetS);
-		nodes.addAll(unvisitedSetT);
+		List<Node> nodes = new ArrayList<Node>();
+		if (map != null) {
+			spaceS.collect(map, SearchSpace.OPEN, nodes);
+			spaceT.collect(map, SearchSpace.OPEN, nodes);
+		}
 		return nodes;
 	}
 
 	@Override
 	public Collection<? extends Node> getVisitedNodes() {
-		List<Node> nodes = new ArrayList<Node>(visitedSetS.size()
-				+ visitedSetT.size());
-		nodes.addAll(visitedSetS);
-		nodes.addAll(visitedSetT);
+		List<Node> nodes = new ArrayList<Node>();
+		if (map != null) {
+			spaceS.collect(map, SearchSpace.CLOSED, nodes);
+			spaceT.collect(map, SearchSpace.CLOSED, nodes);
+		}
 		return nodes;
 	}
 
 	@Override
 	public Node[] getPaths() {
-		if (path != null) {
-			return new Node[] { path };
+		if (map == null) {
+			return new Node[] { null };
+		} else if (path != null) {
+			Node node = null;
+			for (int cell : path) {
+				Node next = new Node(map.getX(cell), map.getY(cell));
+				next.parent = node;
+				node = next;
+			}
+			return new Node[] { node };
 		} else {
-			return new Node[] { currentS, currentT };
+			return new Node[] { spaceS.toNode(map, currentS),
+					spaceT.toNode(map, currentT) };
+		}
+	}
+
+	@Override
+	protected int getExpansions() {
+		return expansions;
+	}
+
+	@Override
+	protected SearchSpace[] getSpaces() {
+		return new SearchSpace[] { spaceS, spaceT };
+	}
+
+	@Override
+	protected int getOpenSize() {
+		return unvisitedQueueS.size() + unvisitedQueueT.size();
+	}
+
+	@Override
+	protected PathResult getResult(GridMap map, PathQuery query) {
+		if (path == null) {
+			return PathResult.notFound(map, expansions);
 		}
+		return PathResult.of(map, query, path, expansions);
 	}
 
 	@Override
 	public void reset() {
+		spaceS.clear();
 		unvisitedQueueS.clear();
-		unvisitedSetS.clear();
-		visitedSetS.clear();
+		spaceT.clear();
 		unvisitedQueueT.clear();
-		unvisitedSetT.clear();
-		visitedSetT.clear();
-		currentS = null;
-		currentT = null;
+		map = null;
+		currentS = -1;
+		currentT = -1;
 		path = null;
+		expansions = 0;
 	}
 
 }
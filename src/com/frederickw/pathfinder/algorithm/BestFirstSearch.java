@@ -0,0 +1,212 @@
+package com.frederickw.pathfinder.algorithm;
+
+import java.util.Collection;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.Node;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.struct.BucketQueue;
+import com.frederickw.pathfinder.struct.IntBinaryHeap;
+
+/**
+ * A best-first search from the source that keeps its state in a
+ * {@link SearchSpace} and its open list in an {@link IntBinaryHeap} of
+ * cells, so expanding a cell allocates nothing. Cells are queued by distance
+ * plus {@link #estimate(int)}, and of two cells with the same sum the one
+ * further from the source comes first, which cuts the expansions on the
+ * plateaus of open maps. Subclasses may also override {@link #expand(int)}
+ * to generate successors other than the neighbours.
+ * <p>
+ * In {@link CostMode#FIXED_POINT} the neighbours are expanded with integer
+ * step costs and queued in a {@link BucketQueue} instead, which needs the
+ * key of a successor to exceed that of its parent by no more than a few
+ * steps.
+ * <p>
+ * The node views are built on demand, on the thread stepping the search.
+ */
+public abstract class BestFirstSearch extends AbstractAlgorithm {
+
+	protected final SearchSpace space = new SearchSpace();
+	protected final IntBinaryHeap openQueue = new IntBinaryHeap();
+	protected final int[] neighbours = new int[GridMap.MAX_NEIGHBOURS];
+	protected final double[] costs = new double[GridMap.MAX_NEIGHBOURS];
+	private final int[] units = new int[GridMap.MAX_NEIGHBOURS];
+	private final BucketQueue bucketQueue;
+
+	protected GridMap map = null;
+	protected PathQuery query = null;
+	protected int target = -1;
+	protected int current = -1;
+	private int expansions = 0;
+
+	protected BestFirstSearch() {
+		this(CostMode.EXACT);
+	}
+
+	protected BestFirstSearch(CostMode mode) {
+		if (mode == CostMode.FIXED_POINT) {
+			bucketQueue = new BucketQueue(GridMap.DIAGONAL_UNITS + 2
+					* GridMap.STRAIGHT_UNITS);
+		} else {
+			bucketQueue = null;
+		}
+	}
+
+	public CostMode getCostMode() {
+		return bucketQueue == null ? CostMode.EXACT : CostMode.FIXED_POINT;
+	}
+
+	/**
+	 * Returns the estimated distance from a cell to the target.
+	 */
+	protected abstract double estimate(int cell);
+
+	@Override
+	protected void start(GridMap map, PathQuery query) {
+		this.map = map;
+		this.query = query;
+		space.reset(map.getCells());
+		target = map.cellOf(query.targetX, query.targetY);
+		final int source = map.cellOf(query.sourceX, query.sourceY);
+		space.open(source, 0.0, -1);
+		push(source, 0.0);
+	}
+
+	@Override
+	protected boolean advance() {
+		if (bucketQueue != null ? !bucketQueue.isEmpty() : !openQueue
+				.isEmpty()) {
+			current = bucketQueue != null ? bucketQueue.poll() : openQueue
+					.poll();
+			space.close(current);
+			expansions++;
+			if (current == target) {
+				return true;
+			}
+			expand(current);
+			return false;
+		} else {
+			current = -1;
+			return true;
+		}
+	}
+
+	/**
+	 * Relaxes every successor of a cell that has just been closed.
+	 */
+	protected void expand(int cell) {
+		if (bucketQueue != null) {
+			final int distance = (int) space.getDistance(cell);
+			final int count = map.getNeighbours(cell, neighbours, units);
+			for (int i = 0; i < count; i++) {
+				relax(cell, neighbours[i], distance + units[i]);
+			}
+		} else {
+			final double distance = space.getDistance(cell);
+			final int count = map.getNeighbours(cell, neighbours, costs);
+			for (int i = 0; i < count; i++) {
+				relax(cell, neighbours[i], distance + costs[i]);
+			}
+		}
+	}
+
+	/**
+	 * Opens {@code cell} through {@code parent} if it is unseen, or moves it
+	 * there if it is open and {@code distance} is shorter.
+	 */
+	protected final void relax(int parent, int cell, double distance) {
+		if (metrics != null) {
+			metrics.relaxed();
+		}
+		switch (space.getState(cell)) {
+		case SearchSpace.UNSEEN:
+			space.open(cell, distance, parent);
+			push(cell, distance);
+			break;
+		case SearchSpace.OPEN:
+			if (distance < space.getDistance(cell)) {
+				space.open(cell, distance, parent);
+				if (metrics != null) {
+					metrics.decreasedKey();
+				}
+				if (bucketQueue != null) {
+					bucketQueue.decreaseKey(cell, (int) distance
+							+ estimateUnits(cell));
+				} else {
+					openQueue.decreaseKey(cell, distance + estimate(cell),
+							-distance);
+				}
+			}
+			break;
+		}
+	}
+
+	private void push(int cell, double distance) {
+		if (bucketQueue != null) {
+			bucketQueue.add(cell, (int) distance + estimateUnits(cell));
+		} else {
+			openQueue.add(cell, distance + estimate(cell), -distance);
+		}
+	}
+
+	private int estimateUnits(int cell) {
+		return (int) (estimate(cell) * GridMap.STRAIGHT_UNITS);
+	}
+
+	@Override
+	public Collection<Node> getUnvisitedNodes() {
+		return space.getNodes(map, SearchSpace.OPEN);
+	}
+
+	@Override
+	public Collection<Node> getVisitedNodes() {
+		return space.getNodes(map, SearchSpace.CLOSED);
+	}
+
+	@Override
+	public Node[] getPaths() {
+		if (map == null) {
+			return new Node[] { null };
+		}
+		return new Node[] { space.toNode(map, current) };
+	}
+
+	@Override
+	protected int getExpansions() {
+		return expansions;
+	}
+
+	@Override
+	protected SearchSpace[] getSpaces() {
+		return new SearchSpace[] { space };
+	}
+
+	@Override
+	protected int getOpenSize() {
+		return bucketQueue != null ? bucketQueue.size() : openQueue.size();
+	}
+
+	@Override
+	protected PathResult getResult(GridMap map, PathQuery query) {
+		if (current < 0) {
+			return PathResult.notFound(map, expansions);
+		}
+		return PathResult.of(map, query, space.getPath(current), expansions);
+	}
+
+	@Override
+	public void reset() {
+		space.clear();
+		openQueue.clear();
+		if (bucketQueue != null) {
+			bucketQueue.clear();
+		}
+		map = null;
+		query = null;
+		target = -1;
+		current = -1;
+		expansions = 0;
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.frederickw.pathfinder.algorithm;
+
+import com.frederickw.pathfinder.GridMap;
+
+/**
+ * How a {@link BestFirstSearch} adds up path costs and orders its open list.
+ */
+public enum CostMode {
+
+	/**
+	 * Costs in {@code double}s, ordered by a binary heap.
+	 */
+	EXACT,
+
+	/**
+	 * Costs in the integer units of {@link GridMap#STRAIGHT_UNITS} and
+	 * {@link GridMap#DIAGONAL_UNITS}, ordered by a monotone bucket queue.
+	 * Estimates are scaled to the same units and rounded down. Distances
+	 * reported by the search are in these units.
+	 */
+	FIXED_POINT
+
+}
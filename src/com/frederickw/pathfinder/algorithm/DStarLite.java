@@ -0,0 +1,319 @@
+package com.frederickw.pathfinder.algorithm;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.Node;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.struct.IntBinaryHeap;
+
+/**
+ * D* Lite: an incremental search from the target back to the source. Every
+ * cell has a distance to the target {@code g} and a one-step lookahead
+ * {@code rhs}, the best distance through one of its neighbours; the queue
+ * holds the cells where the two differ.
+ * <p>
+ * The distances are kept between searches. When a search starts on a map
+ * of the same size with the same target, only the cells whose walls changed
+ * and their neighbours are updated, and the steps repair the distances that
+ * became wrong instead of searching from scratch. A moved source is handled
+ * by raising the keys, as in the original algorithm. Each step processes
+ * one cell taken from the queue.
+ * <p>
+ * Distances are counted in the integer units of
+ * {@link GridMap#STRAIGHT_UNITS} and {@link GridMap#DIAGONAL_UNITS}. They
+ * are held in {@code double}s, which add integers exactly, so that keys
+ * summed in different orders still compare equal; with fractional costs a
+ * rounding error in a key could end a repair early.
+ * <p>
+ * The visited and unvisited nodes are the cells taken from and added to the
+ * queue since the last {@link #init}.
+ */
+public class DStarLite extends AbstractAlgorithm {
+
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+
+	private final int[] neighbours = new int[GridMap.MAX_NEIGHBOURS];
+	private final int[] units = new int[GridMap.MAX_NEIGHBOURS];
+	private final int[] around = new int[GridMap.MAX_NEIGHBOURS];
+
+	// The state kept between searches, for the map it was last repaired on.
+	private GridMap planned = null;
+	private double[] g = new double[0];
+	private double[] rhs = new double[0];
+	private int[] next = new int[0];
+	private final IntBinaryHeap queue = new IntBinaryHeap();
+	private double km = 0.0;
+	private int source = -1;
+	private int target = -1;
+	private int updated = 0;
+
+	private GridMap map = null;
+	private final SearchSpace space = new SearchSpace();
+	private boolean done = false;
+	private int[] path = null;
+	private int expansions = 0;
+
+	/**
+	 * Returns the number of cells the last {@link #init} updated because
+	 * their walls or a neighbour's changed.
+	 */
+	public int getUpdatedCells() {
+		return updated;
+	}
+
+	/**
+	 * Drops the distances kept between searches, so the next one starts from
+	 * scratch.
+	 */
+	public void forget() {
+		planned = null;
+		queue.clear();
+	}
+
+	@Override
+	protected void start(GridMap map, PathQuery query) {
+		this.map = map;
+		space.reset(map.getCells());
+		done = false;
+		path = null;
+		updated = 0;
+		final int newSource = map.cellOf(query.sourceX, query.sourceY);
+		final int newTarget = map.cellOf(query.targetX, query.targetY);
+		if (planned == null || planned.getWidth() != map.getWidth()
+				|| planned.getHeight() != map.getHeight()
+				|| target != newTarget) {
+			initialize(map.getCells(), newSource, newTarget);
+		} else {
+			km += heuristic(source, newSource);
+			source = newSource;
+			if (planned != map) {
+				for (int cell = map.nextDifference(planned, 0); cell >= 0; cell = map
+						.nextDifference(planned, cell + 1)) {
+					// The cell's own edges and the diagonals past its corners
+					// all leave the cell or one of its neighbours.
+					updateVertex(cell);
+					updateNeighbours(cell);
+					updated += 1 + around(cell);
+				}
+			}
+		}
+		planned = map;
+	}
+
+	private void initialize(int cells, int source, int target) {
+		if (g.length < cells) {
+			g = new double[cells];
+			rhs = new double[cells];
+			next = new int[cells];
+		}
+		Arrays.fill(g, 0, cells, INFINITY);
+		Arrays.fill(rhs, 0, cells, INFINITY);
+		Arrays.fill(next, 0, cells, -1);
+		queue.clear();
+		km = 0.0;
+		this.source = source;
+		this.target = target;
+		rhs[target] = 0.0;
+		push(target);
+	}
+
+	@Override
+	protected boolean advance() {
+		if (done) {
+			return true;
+		}
+		if (queue.isEmpty() || !lessThanSource(queue.peekKey(), queue.peekTie())
+				&& rhs[source] == g[source]) {
+			finish();
+			return true;
+		}
+		final double oldKey = queue.peekKey();
+		final double oldTie = queue.peekTie();
+		final int u = queue.poll();
+		expansions++;
+		space.open(u, rhs[u], next[u]);
+		space.close(u);
+		final double newKey = key(u);
+		final double newTie = Math.min(g[u], rhs[u]);
+		if (oldKey < newKey || (oldKey == newKey && oldTie < newTie)) {
+			queue.add(u, newKey, newTie);
+		} else if (g[u] > rhs[u]) {
+			g[u] = rhs[u];
+			updateNeighbours(u);
+		} else {
+			g[u] = INFINITY;
+			updateVertex(u);
+			updateNeighbours(u);
+		}
+		return false;
+	}
+
+	private boolean lessThanSource(double key, double tie) {
+		final double sourceKey = key(source);
+		return key < sourceKey
+				|| (key == sourceKey && tie < Math.min(g[source], rhs[source]));
+	}
+
+	// Updates the cells that may step to the given one.
+	private void updateNeighbours(int cell) {
+		final int count = around(cell);
+		for (int i = 0; i < count; i++) {
+			updateVertex(around[i]);
+		}
+	}
+
+	private void updateVertex(int cell) {
+		if (cell != target) {
+			double best = INFINITY;
+			int bestNext = -1;
+			if (!map.isWall(cell)) {
+				final int count = map.getNeighbours(cell, neighbours, units);
+				for (int i = 0; i < count; i++) {
+					final double d = units[i] + g[neighbours[i]];
+					if (d < best) {
+						best = d;
+						bestNext = neighbours[i];
+					}
+				}
+			}
+			rhs[cell] = best;
+			next[cell] = bestNext;
+		}
+		queue.remove(cell);
+		if (g[cell] != rhs[cell]) {
+			push(cell);
+		}
+	}
+
+	private void push(int cell) {
+		queue.add(cell, key(cell), Math.min(g[cell], rhs[cell]));
+		if (!space.isClosed(cell)) {
+			space.open(cell, rhs[cell], next[cell]);
+		}
+	}
+
+	private double key(int cell) {
+		return Math.min(g[cell], rhs[cell]) + heuristic(source, cell) + km;
+	}
+
+	// The distance across an empty map in units, which never overestimates.
+	private double heuristic(int from, int to) {
+		final int dx = Math.abs(map.getX(to) - map.getX(from));
+		final int dy = Math.abs(map.getY(to) - map.getY(from));
+		return (double) Math.min(dx, dy) * GridMap.DIAGONAL_UNITS
+				+ (double) Math.abs(dx - dy) * GridMap.STRAIGHT_UNITS;
+	}
+
+	// Writes the cells one step from a cell, walls or not, into around.
+	private int around(int cell) {
+		final int x = map.getX(cell);
+		final int y = map.getY(cell);
+		int count = 0;
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				if ((dx != 0 || dy != 0) && map.contains(x + dx, y + dy)) {
+					around[count++] = map.cellOf(x + dx, y + dy);
+				}
+			}
+		}
+		return count;
+	}
+
+	// Follows the cheapest step to the target from the source.
+	private void finish() {
+		done = true;
+		if (g[source] == INFINITY) {
+			return;
+		}
+		int[] cells = new int[64];
+		int length = 0;
+		int cell = source;
+		cells[length++] = cell;
+		while (cell != target && length <= map.getCells()) {
+			double best = INFINITY;
+			int bestNext = -1;
+			final int count = map.getNeighbours(cell, neighbours, units);
+			for (int i = 0; i < count; i++) {
+				final double d = units[i] + g[neighbours[i]];
+				if (d < best) {
+					best = d;
+					bestNext = neighbours[i];
+				}
+			}
+			if (bestNext < 0) {
+				return;
+			}
+			cell = bestNext;
+			if (length == cells.length) {
+				cells = Arrays.copyOf(cells, length * 2);
+			}
+			cells[length++] = cell;
+		}
+		if (cell == target) {
+			path = Arrays.copyOf(cells, length);
+		}
+	}
+
+	@Override
+	public Collection<Node> getUnvisitedNodes() {
+		return space.getNodes(map, SearchSpace.OPEN);
+	}
+
+	@Override
+	public Collection<Node> getVisitedNodes() {
+		return space.getNodes(map, SearchSpace.CLOSED);
+	}
+
+	@Override
+	public Node[] getPaths() {
+		if (map == null || path == null) {
+			return new Node[] { null };
+		}
+		Node node = null;
+		for (int cell : path) {
+			final Node n = new Node(map.getX(cell), map.getY(cell));
+			n.parent = node;
+			node = n;
+		}
+		return new Node[] { node };
+	}
+
+	@Override
+	protected int getExpansions() {
+		return expansions;
+	}
+
+	@Override
+	protected SearchSpace[] getSpaces() {
+		return new SearchSpace[] { space };
+	}
+
+	@Override
+	protected int getOpenSize() {
+		return queue.size();
+	}
+
+	@Override
+	protected PathResult getResult(GridMap map, PathQuery query) {
+		if (path == null) {
+			return PathResult.notFound(map, expansions);
+		}
+		return PathResult.of(map, query, path, expansions);
+	}
+
+	/**
+	 * Clears the search; the distances are kept for the next one.
+	 */
+	@Override
+	public void reset() {
+		space.clear();
+		map = null;
+		done = false;
+		path = null;
+		expansions = 0;
+	}
+
+}
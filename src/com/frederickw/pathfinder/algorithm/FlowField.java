@@ -0,0 +1,187 @@
+package com.frederickw.pathfinder.algorithm;
+
+import java.util.Arrays;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.MapData;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+
+/**
+ * The distance from every cell of a map to one target and the direction of
+ * the first step of a shortest path from there, found by a single Dijkstra
+ * search outwards from the target. Any number of agents heading for the
+ * target can then read their paths in time proportional to their length.
+ * <p>
+ * A field belongs to the {@link GridMap} it was built on, and so to one
+ * version of the walls, as {@link MapData#toGridMap()} returns the same map
+ * until they change; {@link #isBuiltFor(GridMap)} tells whether it can still
+ * be used. Fields are immutable and can be shared between threads.
+ */
+public final class FlowField {
+
+	/** The direction of cells that are the target or cannot reach it. */
+	public static final int NONE = -1;
+
+	// Directions in the order of GridMap's neighbours.
+	private static final int[] DX = { -1, -1, -1, 0, 0, 1, 1, 1 };
+	private static final int[] DY = { -1, 0, 1, -1, 1, -1, 0, 1 };
+
+	private final GridMap map;
+	private final int target;
+	private final double[] distances;
+	private final byte[] directions;
+	private final int expansions;
+
+	private FlowField(GridMap map, int target, double[] distances,
+			byte[] directions, int expansions) {
+		this.map = map;
+		this.target = target;
+		this.distances = distances;
+		this.directions = directions;
+		this.expansions = expansions;
+	}
+
+	public static FlowField build(GridMap map, int targetX, int targetY) {
+		if (!map.contains(targetX, targetY)) {
+			throw new IllegalArgumentException("target outside the map");
+		}
+		final FieldSearch search = new FieldSearch();
+		final int target = map.cellOf(targetX, targetY);
+		search.init(map, target);
+		while (!search.step()) {
+		}
+		final int cells = map.getCells();
+		final double[] distances = new double[cells];
+		final byte[] directions = new byte[cells];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(directions, (byte) NONE);
+		final SearchSpace space = search.space;
+		for (int i = 0; i < space.size(); i++) {
+			final int cell = space.getCell(i);
+			distances[cell] = space.getDistance(cell);
+			final int next = space.getParent(cell);
+			if (next >= 0) {
+				directions[cell] = (byte) direction(map.getX(next)
+						- map.getX(cell), map.getY(next) - map.getY(cell));
+			}
+		}
+		return new FlowField(map, target, distances, directions,
+				search.getExpansions());
+	}
+
+	private static int direction(int dx, int dy) {
+		final int d = (dx + 1) * 3 + dy + 1;
+		return d > 4 ? d - 1 : d;
+	}
+
+	public GridMap getMap() {
+		return map;
+	}
+
+	/**
+	 * Returns whether the field was built on the given map, that is, on the
+	 * version of the walls it describes.
+	 */
+	public boolean isBuiltFor(GridMap map) {
+		return this.map == map;
+	}
+
+	public int getTargetX() {
+		return map.getX(target);
+	}
+
+	public int getTargetY() {
+		return map.getY(target);
+	}
+
+	/** Returns the number of cells expanded to build the field. */
+	public int getExpansions() {
+		return expansions;
+	}
+
+	public boolean isReachable(int x, int y) {
+		return distances[map.cellOf(x, y)] != Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the length of a shortest path from a cell to the target, or
+	 * infinity if there is none.
+	 */
+	public double getDistance(int x, int y) {
+		return distances[map.cellOf(x, y)];
+	}
+
+	/**
+	 * Returns the direction of the first step from a cell towards the
+	 * target, from 0 to 7, or {@link #NONE}.
+	 */
+	public int getDirection(int x, int y) {
+		return directions[map.cellOf(x, y)];
+	}
+
+	public static int getDX(int direction) {
+		return DX[direction];
+	}
+
+	public static int getDY(int direction) {
+		return DY[direction];
+	}
+
+	/**
+	 * Returns the cells of a shortest path from a cell to the target, or
+	 * {@code null} if there is none.
+	 */
+	public int[] getPath(int x, int y) {
+		int cell = map.cellOf(x, y);
+		if (distances[cell] == Double.POSITIVE_INFINITY) {
+			return null;
+		}
+		int length = 1;
+		for (int c = cell; c != target; c = next(c)) {
+			length++;
+		}
+		final int[] cells = new int[length];
+		for (int i = 0; i < length; i++) {
+			cells[i] = cell;
+			if (cell != target) {
+				cell = next(cell);
+			}
+		}
+		return cells;
+	}
+
+	private int next(int cell) {
+		final int d = directions[cell];
+		return cell + DY[d] * map.getWidth() + DX[d];
+	}
+
+	/**
+	 * Returns the path from a cell to the target as the result of a query.
+	 * It reports no expansions, as reading it expands nothing.
+	 */
+	public PathResult getResult(int x, int y) {
+		final int[] cells = getPath(x, y);
+		if (cells == null) {
+			return PathResult.notFound(map, 0);
+		}
+		return PathResult.of(map, new PathQuery(x, y, getTargetX(),
+				getTargetY()), cells, 0);
+	}
+
+	/**
+	 * Dijkstra from the target with no goal, so it runs until every
+	 * reachable cell is closed.
+	 */
+	private static final class FieldSearch extends Dijkstra {
+
+		void init(GridMap map, int root) {
+			final int x = map.getX(root);
+			final int y = map.getY(root);
+			init(map, new PathQuery(x, y, x, y));
+			target = -1;
+		}
+
+	}
+
+}
@@ -0,0 +1,627 @@
+package com.frederickw.pathfinder.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.Node;
+import com.frederickw.pathfinder.PathQuery;
+import com.frederickw.pathfinder.PathResult;
+import com.frederickw.pathfinder.struct.IntBinaryHeap;
+
+/**
+ * Hierarchical path-finding A* (HPA*). The map is split into square
+ * clusters. Wherever two neighbouring clusters touch through open cells, one
+ * or two entrances are placed on their border, and the distances between
+ * the entrances of each cluster are precomputed. A query is first searched
+ * on this abstract graph of entrances; each leg of the abstract path is then
+ * refined by an A* search confined to one cluster.
+ * <p>
+ * The abstraction is kept between searches. When a search starts on a map
+ * of the same size as the last one, only the clusters whose walls changed
+ * and the neighbours whose entrances moved as a result are rebuilt.
+ * <p>
+ * Paths are not always the shortest, as they only cross cluster borders at
+ * entrances; on typical maps they are 5-10% longer.
+ */
+public class HPAStar extends AbstractAlgorithm {
+
+	public static final int DEFAULT_CLUSTER_SIZE = 16;
+	// Border openings at least this long get an entrance at each end.
+	private static final int WIDE_ENTRANCE = 6;
+	private static final byte WEST = 1;
+	private static final byte EAST = 2;
+	private static final byte NORTH = 4;
+	private static final byte SOUTH = 8;
+	private static final double UNREACHABLE = Double.POSITIVE_INFINITY;
+
+	private final int clusterSize;
+	private final boolean[] marks;
+
+	// The abstraction of the map it was last built for.
+	private GridMap built = null;
+	private int clustersX = 0;
+	private int clustersY = 0;
+	private byte[] transitions = null;
+	private int[][] entrances = null;
+	private double[][] distances = null;
+	private int rebuilt = 0;
+
+	private final SearchSpace scratch = new SearchSpace();
+	private final IntBinaryHeap scratchQueue = new IntBinaryHeap();
+	private final int[] neighbours = new int[GridMap.MAX_NEIGHBOURS];
+	private final double[] costs = new double[GridMap.MAX_NEIGHBOURS];
+
+	private GridMap map = null;
+	private PathQuery query = null;
+	private int source = -1;
+	private int target = -1;
+	private int sourceCluster = -1;
+	private int targetCluster = -1;
+	private double[] fromSource = null;
+	private double[] toTarget = null;
+	private double direct = UNREACHABLE;
+
+	private final SearchSpace space = new SearchSpace();
+	private final IntBinaryHeap openQueue = new IntBinaryHeap();
+	private int current = -1;
+	private int expansions = 0;
+
+	private final ClusterSearch refiner = new ClusterSearch();
+	private int[] waypoints = null;
+	private int leg = 0;
+	private boolean refining = false;
+	private int[] cells = new int[64];
+	private int cellCount = 0;
+
+	public HPAStar() {
+		this(DEFAULT_CLUSTER_SIZE);
+	}
+
+	public HPAStar(int clusterSize) {
+		if (clusterSize < 2) {
+			throw new IllegalArgumentException("invalid cluster size");
+		}
+		this.clusterSize = clusterSize;
+		marks = new boolean[clusterSize];
+	}
+
+	/**
+	 * Returns the number of clusters built or rebuilt by the last
+	 * {@link #init}.
+	 */
+	public int getRebuiltClusters() {
+		return rebuilt;
+	}
+
+	@Override
+	protected void start(GridMap map, PathQuery query) {
+		this.map = map;
+		this.query = query;
+		update(map);
+		source = map.cellOf(query.sourceX, query.sourceY);
+		target = map.cellOf(query.targetX, query.targetY);
+		sourceCluster = clusterOf(source);
+		targetCluster = clusterOf(target);
+		expansions += searchCluster(source, sourceCluster);
+		fromSource = distancesTo(entrances[sourceCluster]);
+		direct = sourceCluster == targetCluster ? distanceTo(target)
+				: UNREACHABLE;
+		expansions += searchCluster(target, targetCluster);
+		toTarget = distancesTo(entrances[targetCluster]);
+		space.reset(map.getCells());
+		space.open(source, 0.0, -1);
+		openQueue.add(source, estimate(source));
+	}
+
+	@Override
+	protected boolean advance() {
+		if (waypoints == null) {
+			return abstractStep();
+		} else {
+			return refineStep();
+		}
+	}
+
+	private boolean abstractStep() {
+		if (openQueue.isEmpty()) {
+			current = -1;
+			return true;
+		}
+		current = openQueue.poll();
+		space.close(current);
+		expansions++;
+		if (current == target) {
+			waypoints = space.getPath(target);
+			leg = 0;
+			append(source);
+			return waypoints.length == 1;
+		}
+		final double distance = space.getDistance(current);
+		final int cluster = clusterOf(current);
+		final int[] e = entrances[cluster];
+		final int index = indexOf(e, current);
+		if (index >= 0) {
+			final int width = map.getWidth();
+			final byte t = transitions[current];
+			if ((t & WEST) != 0) {
+				relax(current, current - 1, distance + GridMap.STRAIGHT_COST);
+			}
+			if ((t & EAST) != 0) {
+				relax(current, current + 1, distance + GridMap.STRAIGHT_COST);
+			}
+			if ((t & NORTH) != 0) {
+				relax(current, current - width, distance
+						+ GridMap.STRAIGHT_COST);
+			}
+			if ((t & SOUTH) != 0) {
+				relax(current, current + width, distance
+						+ GridMap.STRAIGHT_COST);
+			}
+			final double[] d = distances[cluster];
+			for (int j = 0; j < e.length; j++) {
+				final double cost = d[index * e.length + j];
+				if (j != index && cost != UNREACHABLE) {
+					relax(current, e[j], distance + cost);
+				}
+			}
+			if (cluster == targetCluster && toTarget[index] != UNREACHABLE) {
+				relax(current, target, distance + toTarget[index]);
+			}
+		}
+		if (current == source) {
+			final int[] s = entrances[sourceCluster];
+			for (int j = 0; j < s.length; j++) {
+				if (fromSource[j] != UNREACHABLE) {
+					relax(current, s[j], distance + fromSource[j]);
+				}
+			}
+			if (direct != UNREACHABLE) {
+				relax(current, target, distance + direct);
+			}
+		}
+		return false;
+	}
+
+	private void relax(int parent, int cell, double distance) {
+		if (metrics != null) {
+			metrics.relaxed();
+		}
+		switch (space.getState(cell)) {
+		case SearchSpace.UNSEEN:
+			space.open(cell, distance, parent);
+			openQueue.add(cell, distance + estimate(cell));
+			break;
+		case SearchSpace.OPEN:
+			if (distance < space.getDistance(cell)) {
+				space.open(cell, distance, parent);
+				openQueue.decreaseKey(cell, distance + estimate(cell));
+				if (metrics != null) {
+					metrics.decreasedKey();
+				}
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Refines one step of the current leg of the abstract path. Legs between
+	 * the two sides of an entrance are a single straight step and need no
+	 * search.
+	 */
+	private boolean refineStep() {
+		final int from = waypoints[leg];
+		final int to = waypoints[leg + 1];
+		if (!refining) {
+			if (Math.abs(map.getX(from) - map.getX(to))
+					+ Math.abs(map.getY(from) - map.getY(to)) == 1) {
+				append(to);
+				return ++leg == waypoints.length - 1;
+			}
+			final int cluster = clusterOf(from);
+			final int x0 = (cluster % clustersX) * clusterSize;
+			final int y0 = (cluster / clustersX) * clusterSize;
+			refiner.init(map, new PathQuery(map.getX(from), map.getY(from),
+					map.getX(to), map.getY(to)), x0, y0, x0 + clusterSize - 1,
+					y0 + clusterSize - 1);
+			refining = true;
+		}
+		if (!refiner.step()) {
+			return false;
+		}
+		final int[] path = refiner.getPath();
+		for (int i = 1; i < path.length; i++) {
+			append(path[i]);
+		}
+		expansions += refiner.getExpansions();
+		refiner.reset();
+		refining = false;
+		return ++leg == waypoints.length - 1;
+	}
+
+	private void append(int cell) {
+		if (cellCount == cells.length) {
+			cells = Arrays.copyOf(cells, cellCount * 2);
+		}
+		cells[cellCount++] = cell;
+	}
+
+	private double estimate(int cell) {
+		return GridMap.octile(map.getX(cell) - query.targetX, map.getY(cell)
+				- query.targetY);
+	}
+
+	private int clusterOf(int cell) {
+		return (map.getY(cell) / clusterSize) * clustersX + map.getX(cell)
+				/ clusterSize;
+	}
+
+	private static int indexOf(int[] cells, int cell) {
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] == cell) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Brings the abstraction up to date with {@code map}, rebuilding all of
+	 * it if the size changed and otherwise only the clusters the changed
+	 * walls affect.
+	 */
+	private void update(GridMap map) {
+		rebuilt = 0;
+		if (built == map) {
+			return;
+		}
+		final int count;
+		boolean[] stale;
+		if (built == null || built.getWidth() != map.getWidth()
+				|| built.getHeight() != map.getHeight()) {
+			clustersX = (map.getWidth() + clusterSize - 1) / clusterSize;
+			clustersY = (map.getHeight() + clusterSize - 1) / clusterSize;
+			count = clustersX * clustersY;
+			transitions = new byte[map.getCells()];
+			entrances = new int[count][];
+			distances = new double[count][];
+			stale = new boolean[count];
+			Arrays.fill(stale, true);
+			for (int c = 0; c < count; c++) {
+				updateBorders(c, stale);
+			}
+		} else {
+			count = clustersX * clustersY;
+			stale = new boolean[count];
+			for (int cell = map.nextDifference(built, 0); cell >= 0; cell = map
+					.nextDifference(built, cell + 1)) {
+				stale[clusterOf(cell)] = true;
+			}
+			final boolean[] changed = stale.clone();
+			for (int c = 0; c < count; c++) {
+				if (changed[c]) {
+					updateBorders(c, stale);
+				}
+			}
+		}
+		built = map;
+		for (int c = 0; c < count; c++) {
+			if (stale[c]) {
+				buildCluster(c);
+				rebuilt++;
+			}
+		}
+	}
+
+	/**
+	 * Places the entrances on the borders of a cluster, marking neighbours
+	 * whose entrances moved as stale.
+	 */
+	private void updateBorders(int cluster, boolean[] stale) {
+		final int cx = cluster % clustersX;
+		final int cy = cluster / clustersX;
+		final int width = map.getWidth();
+		final int height = map.getHeight();
+		final int x0 = cx * clusterSize;
+		final int y0 = cy * clusterSize;
+		final int columns = Math.min(width - x0, clusterSize);
+		final int rows = Math.min(height - y0, clusterSize);
+		if (cx > 0
+				&& updateBorder(map.cellOf(x0 - 1, y0), 1, width, rows, EAST,
+						WEST)) {
+			stale[cluster - 1] = true;
+		}
+		if (cx < clustersX - 1
+				&& updateBorder(map.cellOf(x0 + clusterSize - 1, y0), 1, width,
+						rows, EAST, WEST)) {
+			stale[cluster + 1] = true;
+		}
+		if (cy > 0
+				&& updateBorder(map.cellOf(x0, y0 - 1), width, 1, columns,
+						SOUTH, NORTH)) {
+			stale[cluster - clustersX] = true;
+		}
+		if (cy < clustersY - 1
+				&& updateBorder(map.cellOf(x0, y0 + clusterSize - 1), width, 1,
+						columns, SOUTH, NORTH)) {
+			stale[cluster + clustersX] = true;
+		}
+	}
+
+	/**
+	 * Places the entrances along one border, whose cells on the near side
+	 * start at {@code first} and advance by {@code step}, and whose far side
+	 * is {@code across} away. Returns whether they moved.
+	 */
+	private boolean updateBorder(int first, int across, int step, int length,
+			byte out, byte in) {
+		int run = 0;
+		for (int i = 0; i <= length; i++) {
+			final int cell = first + i * step;
+			if (i < length && !map.isWall(cell) && !map.isWall(cell + across)) {
+				marks[i] = false;
+				run++;
+				continue;
+			}
+			if (run >= WIDE_ENTRANCE) {
+				marks[i - run] = true;
+				marks[i - 1] = true;
+			} else if (run > 0) {
+				marks[i - run + (run - 1) / 2] = true;
+			}
+			if (i < length) {
+				marks[i] = false;
+			}
+			run = 0;
+		}
+		boolean moved = false;
+		for (int i = 0; i < length; i++) {
+			final int cell = first + i * step;
+			if (marks[i] != ((transitions[cell] & out) != 0)) {
+				transitions[cell] ^= out;
+				transitions[cell + across] ^= in;
+				moved = true;
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * Collects the entrances of a cluster and the distances between them.
+	 */
+	private void buildCluster(int cluster) {
+		final int x0 = (cluster % clustersX) * clusterSize;
+		final int y0 = (cluster / clustersX) * clusterSize;
+		final int x1 = Math.min(map.getWidth(), x0 + clusterSize) - 1;
+		final int y1 = Math.min(map.getHeight(), y0 + clusterSize) - 1;
+		int count = 0;
+		int[] e = new int[8];
+		for (int y = y0; y <= y1; y++) {
+			for (int x = x0; x <= x1; x++) {
+				if (y != y0 && y != y1 && x != x0 && x != x1) {
+					continue;
+				}
+				final int cell = map.cellOf(x, y);
+				if (transitions[cell] != 0) {
+					if (count == e.length) {
+						e = Arrays.copyOf(e, count * 2);
+					}
+					e[count++] = cell;
+				}
+			}
+		}
+		e = Arrays.copyOf(e, count);
+		final double[] d = new double[count * count];
+		for (int i = 0; i < count; i++) {
+			searchCluster(e[i], cluster);
+			for (int j = i + 1; j < count; j++) {
+				d[i * count + j] = distanceTo(e[j]);
+				d[j * count + i] = d[i * count + j];
+			}
+		}
+		entrances[cluster] = e;
+		distances[cluster] = d;
+	}
+
+	/**
+	 * Runs Dijkstra from a cell without leaving its cluster, leaving the
+	 * distances in {@link #scratch}. Returns the number of cells expanded.
+	 */
+	private int searchCluster(int from, int cluster) {
+		final int x0 = (cluster % clustersX) * clusterSize;
+		final int y0 = (cluster / clustersX) * clusterSize;
+		final int x1 = x0 + clusterSize - 1;
+		final int y1 = y0 + clusterSize - 1;
+		scratch.reset(map.getCells());
+		scratchQueue.clear();
+		scratch.open(from, 0.0, -1);
+		scratchQueue.add(from, 0.0);
+		int expanded = 0;
+		while (!scratchQueue.isEmpty()) {
+			final int cell = scratchQueue.poll();
+			scratch.close(cell);
+			expanded++;
+			final double distance = scratch.getDistance(cell);
+			final int count = map.getNeighbours(cell, neighbours, costs);
+			for (int i = 0; i < count; i++) {
+				final int next = neighbours[i];
+				final int x = map.getX(next);
+				final int y = map.getY(next);
+				if (x < x0 || x > x1 || y < y0 || y > y1) {
+					continue;
+				}
+				final double dist = distance + costs[i];
+				if (!scratch.isSeen(next)) {
+					scratch.open(next, dist, cell);
+					scratchQueue.add(next, dist);
+				} else if (scratch.isOpen(next)
+						&& dist < scratch.getDistance(next)) {
+					scratch.open(next, dist, cell);
+					scratchQueue.decreaseKey(next, dist);
+				}
+			}
+		}
+		return expanded;
+	}
+
+	private double distanceTo(int cell) {
+		return scratch.isClosed(cell) ? scratch.getDistance(cell)
+				: UNREACHABLE;
+	}
+
+	private double[] distancesTo(int[] cells) {
+		final double[] d = new double[cells.length];
+		for (int i = 0; i < cells.length; i++) {
+			d[i] = distanceTo(cells[i]);
+		}
+		return d;
+	}
+
+	@Override
+	public Collection<Node> getUnvisitedNodes() {
+		final List<Node> nodes = new ArrayList<Node>();
+		if (map != null) {
+			space.collect(map, SearchSpace.OPEN, nodes);
+			if (refining) {
+				nodes.addAll(refiner.getUnvisitedNodes());
+			}
+		}
+		return nodes;
+	}
+
+	@Override
+	public Collection<Node> getVisitedNodes() {
+		final List<Node> nodes = new ArrayList<Node>();
+		if (map != null) {
+			space.collect(map, SearchSpace.CLOSED, nodes);
+			if (refining) {
+				nodes.addAll(refiner.getVisitedNodes());
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * While the abstract path is being refined, the first path runs through
+	 * the cells refined so far and then the remaining entrances; the second
+	 * is the leg being searched.
+	 */
+	@Override
+	public Node[] getPaths() {
+		if (map == null) {
+			return new Node[] { null };
+		} else if (waypoints == null) {
+			return new Node[] { space.toNode(map, current) };
+		}
+		Node node = null;
+		for (int i = 0; i < cellCount; i++) {
+			node = link(node, cells[i]);
+		}
+		for (int i = leg + 1; i < waypoints.length; i++) {
+			node = link(node, waypoints[i]);
+		}
+		if (refining) {
+			return new Node[] { node, refiner.getPaths()[0] };
+		}
+		return new Node[] { node };
+	}
+
+	private Node link(Node parent, int cell) {
+		final Node node = new Node(map.getX(cell), map.getY(cell));
+		node.parent = parent;
+		return node;
+	}
+
+	@Override
+	protected int getExpansions() {
+		return expansions;
+	}
+
+	@Override
+	protected SearchSpace[] getSpaces() {
+		return new SearchSpace[] { space, refiner.space };
+	}
+
+	@Override
+	protected int getOpenSize() {
+		return openQueue.size() + (refining ? refiner.getOpenSize() : 0);
+	}
+
+	@Override
+	protected PathResult getResult(GridMap map, PathQuery query) {
+		if (waypoints == null) {
+			return PathResult.notFound(map, expansions);
+		}
+		return PathResult.of(map, query, Arrays.copyOf(cells, cellCount),
+				expansions);
+	}
+
+	/**
+	 * Clears the search; the abstraction is kept for the next one.
+	 */
+	@Override
+	public void reset() {
+		space.clear();
+		openQueue.clear();
+		refiner.reset();
+		map = null;
+		query = null;
+		source = -1;
+		target = -1;
+		fromSource = null;
+		toTarget = null;
+		current = -1;
+		expansions = 0;
+		waypoints = null;
+		leg = 0;
+		refining = false;
+		cellCount = 0;
+	}
+
+	/**
+	 * A* with the octile distance that does not leave a rectangle.
+	 */
+	private static class ClusterSearch extends BestFirstSearch {
+
+		private int minX;
+		private int minY;
+		private int maxX;
+		private int maxY;
+
+		void init(GridMap map, PathQuery query, int minX, int minY, int maxX,
+				int maxY) {
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			init(map, query);
+		}
+
+		int[] getPath() {
+			return space.getPath(current);
+		}
+
+		@Override
+		protected double estimate(int cell) {
+			return GridMap.octile(map.getX(cell) - query.targetX, map.getY(cell)
+					- query.targetY);
+		}
+
+		@Override
+		protected void expand(int cell) {
+			final double distance = space.getDistance(cell);
+			final int count = map.getNeighbours(cell, neighbours, costs);
+			for (int i = 0; i < count; i++) {
+				final int x = map.getX(neighbours[i]);
+				final int y = map.getY(neighbours[i]);
+				if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+					relax(cell, neighbours[i], distance + costs[i]);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.frederickw.pathfinder.algorithm;
+
+import com.frederickw.pathfinder.GridMap;
+
+/**
+ * Jump Point Search: A* over the same 8-connected, no-corner-cutting grid
+ * that only queues the cells where an optimal path may have to turn. Cells
+ * are linked to the jump point they were reached from, so consecutive path
+ * cells may be several cells apart along a straight or diagonal line.
+ */
+public class JPS extends BestFirstSearch {
+
+	private final int[] directions = new int[GridMap.MAX_NEIGHBOURS * 2];
+
+	@Override
+	protected double estimate(int cell) {
+		return GridMap.octile(query.targetX - map.getX(cell), query.targetY
+				- map.getY(cell));
+	}
+
+	@Override
+	protected void expand(int cell) {
+		final int x = map.getX(cell);
+		final int y = map.getY(cell);
+		final double distance = space.getDistance(cell);
+		final int count = successorDirections(cell);
+		for (int i = 0; i < count; i += 2) {
+			final int dx = directions[i];
+			final int dy = directions[i + 1];
+			final int next = jump(x + dx, y + dy, dx, dy);
+			if (next >= 0) {
+				relax(cell, next, distance
+						+ GridMap.octile(map.getX(next) - x, map.getY(next) - y));
+			}
+		}
+	}
+
+	/**
+	 * Writes the (dx, dy) pairs worth jumping in from a cell into
+	 * {@link #directions} and returns the number of ints written. The source
+	 * tries every traversable direction; any other cell only the natural
+	 * and forced neighbours of the direction it was reached in.
+	 */
+	private int successorDirections(int cell) {
+		final int x = map.getX(cell);
+		final int y = map.getY(cell);
+		final int parent = space.getParent(cell);
+		int count = 0;
+		if (parent < 0) {
+			final int n = map.getNeighbours(cell, neighbours, costs);
+			for (int i = 0; i < n; i++) {
+				directions[count++] = map.getX(neighbours[i]) - x;
+				directions[count++] = map.getY(neighbours[i]) - y;
+			}
+			return count;
+		}
+		final int dx = Integer.signum(x - map.getX(parent));
+		final int dy = Integer.signum(y - map.getY(parent));
+		if (dx != 0 && dy != 0) {
+			final boolean vertical = isOpen(x, y + dy);
+			final boolean horizontal = isOpen(x + dx, y);
+			if (vertical) {
+				directions[count++] = 0;
+				directions[count++] = dy;
+			}
+			if (horizontal) {
+				directions[count++] = dx;
+				directions[count++] = 0;
+			}
+			if (vertical && horizontal) {
+				directions[count++] = dx;
+				directions[count++] = dy;
+			}
+		} else if (dx != 0) {
+			final boolean ahead = isOpen(x + dx, y);
+			final boolean below = isOpen(x, y + 1);
+			final boolean above = isOpen(x, y - 1);
+			if (ahead) {
+				directions[count++] = dx;
+				directions[count++] = 0;
+				if (below) {
+					directions[count++] = dx;
+					directions[count++] = 1;
+				}
+				if (above) {
+					directions[count++] = dx;
+					directions[count++] = -1;
+				}
+			}
+			if (below) {
+				directions[count++] = 0;
+				directions[count++] = 1;
+			}
+			if (above) {
+				directions[count++] = 0;
+				directions[count++] = -1;
+			}
+		} else {
+			final boolean ahead = isOpen(x, y + dy);
+			final boolean right = isOpen(x + 1, y);
+			final boolean left = isOpen(x - 1, y);
+			if (ahead) {
+				directions[count++] = 0;
+				directions[count++] = dy;
+				if (right) {
+					directions[count++] = 1;
+					directions[count++] = dy;
+				}
+				if (left) {
+					directions[count++] = -1;
+					directions[count++] = dy;
+				}
+			}
+			if (right) {
+				directions[count++] = 1;
+				directions[count++] = 0;
+			}
+			if (left) {
+				directions[count++] = -1;
+				directions[count++] = 0;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Walks from (x, y) in direction (dx, dy) and returns the cell of the
+	 * first jump point found, or -1 if the walk runs into a wall, the edge of
+	 * the map or a corner it may not cut.
+	 */
+	private int jump(int x, int y, int dx, int dy) {
+		for (;;) {
+			if (!isOpen(x, y)) {
+				return -1;
+			}
+			if (x == query.targetX && y == query.targetY) {
+				return map.cellOf(x, y);
+			}
+			if (dx != 0 && dy != 0) {
+				if (jump(x + dx, y, dx, 0) >= 0 || jump(x, y + dy, 0, dy) >= 0) {
+					return map.cellOf(x, y);
+				}
+				if (!isOpen(x + dx, y) || !isOpen(x, y + dy)) {
+					return -1;
+				}
+			} else if (dx != 0) {
+				if ((isOpen(x, y - 1) && !isOpen(x - dx, y - 1))
+						|| (isOpen(x, y + 1) && !isOpen(x - dx, y + 1))) {
+					return map.cellOf(x, y);
+				}
+			} else {
+				if ((isOpen(x - 1, y) && !isOpen(x - 1, y - dy))
+						|| (isOpen(x + 1, y) && !isOpen(x + 1, y - dy))) {
+					return map.cellOf(x, y);
+				}
+			}
+			x += dx;
+			y += dy;
+		}
+	}
+
+	private boolean isOpen(int x, int y) {
+		return !map.isWall(x, y);
+	}
+
+}
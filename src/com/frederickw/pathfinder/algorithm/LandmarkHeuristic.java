@@ -0,0 +1,187 @@
+package com.frederickw.pathfinder.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.frederickw.pathfinder.GridMap;
+
+/**
+ * The ALT heuristic: distances from a few landmark cells to every cell of a
+ * map, used to bound the distance between any two cells by the triangle
+ * inequality, {@code |d(L, target) - d(L, cell)|}. Unlike the geometric
+ * heuristics it accounts for walls, so A* expands far fewer cells on maps
+ * with long detours, such as mazes. The octile distance is used where it is
+ * the larger bound.
+ * <p>
+ * Landmarks are spread around the edge of the map, where they bound the most
+ * pairs of cells, each moved to the nearest open cell. One distance table
+ * is computed per landmark by a Dijkstra search, in parallel, and stored as
+ * a {@code float[]}.
+ * <p>
+ * A heuristic belongs to the {@link GridMap} it was built on and is not
+ * admissible on a map with fewer walls. It is immutable and can be shared
+ * between threads.
+ */
+public final class LandmarkHeuristic extends AStar.Heuristic {
+
+	public static final int DEFAULT_LANDMARKS = 8;
+	// Float rounding in two table entries, relative to their sum; subtracted
+	// so the bound stays admissible.
+	private static final double ROUNDING = 1e-7;
+
+	private final GridMap map;
+	private final int[] landmarks;
+	private final float[][] tables;
+
+	private LandmarkHeuristic(GridMap map, int[] landmarks, float[][] tables) {
+		this.map = map;
+		this.landmarks = landmarks;
+		this.tables = tables;
+	}
+
+	public static LandmarkHeuristic build(GridMap map) {
+		return build(map, DEFAULT_LANDMARKS);
+	}
+
+	/**
+	 * Picks {@code count} landmarks on a map and computes their tables, one
+	 * thread per processor.
+	 */
+	public static LandmarkHeuristic build(final GridMap map, int count) {
+		if (count <= 0) {
+			throw new IllegalArgumentException("invalid landmark count");
+		}
+		final int[] landmarks = select(map, count);
+		final float[][] tables = new float[landmarks.length][];
+		final ExecutorService executor = Executors.newFixedThreadPool(Math
+				.min(landmarks.length, Runtime.getRuntime()
+						.availableProcessors()));
+		try {
+			final List<Future<float[]>> futures = new ArrayList<Future<float[]>>();
+			for (final int landmark : landmarks) {
+				futures.add(executor.submit(new Callable<float[]>() {
+					@Override
+					public float[] call() {
+						return table(map, landmark);
+					}
+				}));
+			}
+			for (int i = 0; i < tables.length; i++) {
+				tables[i] = futures.get(i).get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return new LandmarkHeuristic(map, landmarks, tables);
+	}
+
+	// Spreads the landmarks evenly around the edge, clockwise from the top
+	// left corner, dropping any that land on the same open cell.
+	private static int[] select(GridMap map, int count) {
+		final int width = map.getWidth();
+		final int height = map.getHeight();
+		final int perimeter = 2 * (width + height) - 4;
+		final int[] landmarks = new int[count];
+		int found = 0;
+		for (int i = 0; i < count; i++) {
+			final int p = (int) ((long) i * perimeter / count);
+			final int x;
+			final int y;
+			if (p < width) {
+				x = p;
+				y = 0;
+			} else if (p < width + height - 1) {
+				x = width - 1;
+				y = p - width + 1;
+			} else if (p < 2 * width + height - 2) {
+				x = 2 * width + height - 3 - p;
+				y = height - 1;
+			} else {
+				x = 0;
+				y = perimeter - p;
+			}
+			final int cell = nearestOpen(map, x, y);
+			boolean duplicate = cell < 0;
+			for (int j = 0; j < found && !duplicate; j++) {
+				duplicate = landmarks[j] == cell;
+			}
+			if (!duplicate) {
+				landmarks[found++] = cell;
+			}
+		}
+		final int[] result = new int[found];
+		System.arraycopy(landmarks, 0, result, 0, found);
+		return result;
+	}
+
+	// Searches rings of growing Chebyshev radius around a cell.
+	private static int nearestOpen(GridMap map, int x, int y) {
+		final int radius = Math.max(map.getWidth(), map.getHeight());
+		for (int r = 0; r < radius; r++) {
+			for (int dy = -r; dy <= r; dy++) {
+				for (int dx = -r; dx <= r; dx++) {
+					if ((Math.abs(dx) == r || Math.abs(dy) == r)
+							&& !map.isWall(x + dx, y + dy)) {
+						return map.cellOf(x + dx, y + dy);
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static float[] table(GridMap map, int landmark) {
+		final FlowField field = FlowField.build(map, map.getX(landmark),
+				map.getY(landmark));
+		final float[] table = new float[map.getCells()];
+		for (int cell = 0; cell < table.length; cell++) {
+			table[cell] = (float) field.getDistance(map.getX(cell),
+					map.getY(cell));
+		}
+		return table;
+	}
+
+	public GridMap getMap() {
+		return map;
+	}
+
+	public boolean isBuiltFor(GridMap map) {
+		return this.map == map;
+	}
+
+	/** Returns the cells of the landmarks. */
+	public int[] getLandmarks() {
+		return landmarks.clone();
+	}
+
+	@Override
+	public double calculate(int x, int y, int targetX, int targetY) {
+		final int cell = map.cellOf(x, y);
+		final int target = map.cellOf(targetX, targetY);
+		double bound = GridMap.octile(targetX - x, targetY - y);
+		for (float[] table : tables) {
+			final double from = table[cell];
+			final double to = table[target];
+			// Infinite when the landmark cannot reach one of the cells.
+			if (from != Double.POSITIVE_INFINITY
+					&& to != Double.POSITIVE_INFINITY) {
+				final double d = Math.abs(to - from) - ROUNDING * (to + from);
+				if (d > bound) {
+					bound = d;
+				}
+			}
+		}
+		return bound;
+	}
+
+}
@@ -0,0 +1,230 @@
+package com.frederickw.pathfinder.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.frederickw.pathfinder.GridMap;
+import com.frederickw.pathfinder.Node;
+
+/**
+ * Per-cell search state held as parallel primitive arrays indexed by cell:
+ * the distance from the root in a {@code double[]}, the parent cell in an
+ * {@code int[]} and the open/closed state in a {@code byte[]}. Only the
+ * cells discovered since the last {@link #reset(int)} are touched, and they
+ * are remembered so a reset costs nothing for the rest of the map.
+ * <p>
+ * {@link Node} objects are only created when a caller asks for a path or a
+ * snapshot for drawing. While journaling, the cells whose state or parent
+ * change are recorded, so a search can publish what each step changed.
+ */
+public final class SearchSpace {
+
+	public static final byte UNSEEN = 0;
+	public static final byte OPEN = 1;
+	public static final byte CLOSED = 2;
+	/**
+	 * Discovered but neither open nor closed, as for a cell closed in an
+	 * earlier pass of an anytime search.
+	 */
+	public static final byte RETIRED = 3;
+
+	private double[] distance = new double[0];
+	private int[] parent = new int[0];
+	private byte[] state = new byte[0];
+	private int[] touched = new int[16];
+	private int touchedCount = 0;
+	private boolean journaling = false;
+	private int[] journal = new int[16];
+	private int journalCount = 0;
+
+	/**
+	 * Forgets every discovered cell and makes room for a map of
+	 * {@code cells} cells. Unlike {@link #clear()}, it drops the journal
+	 * rather than recording the forgotten cells.
+	 */
+	public void reset(int cells) {
+		clear();
+		journalCount = 0;
+		if (state.length < cells) {
+			distance = new double[cells];
+			parent = new int[cells];
+			state = new byte[cells];
+		}
+	}
+
+	/** Forgets every discovered cell, keeping the arrays. */
+	public void clear() {
+		for (int i = 0; i < touchedCount; i++) {
+			state[touched[i]] = UNSEEN;
+			if (journaling) {
+				record(touched[i]);
+			}
+		}
+		touchedCount = 0;
+	}
+
+	public byte getState(int cell) {
+		return state[cell];
+	}
+
+	public boolean isSeen(int cell) {
+		return state[cell] != UNSEEN;
+	}
+
+	public boolean isOpen(int cell) {
+		return state[cell] == OPEN;
+	}
+
+	public boolean isClosed(int cell) {
+		return state[cell] == CLOSED;
+	}
+
+	/** Returns the distance of a discovered cell from the root. */
+	public double getDistance(int cell) {
+		return distance[cell];
+	}
+
+	/** Returns the parent of a discovered cell, or -1 for a root. */
+	public int getParent(int cell) {
+		return parent[cell];
+	}
+
+	/**
+	 * Records a path to a cell and marks it open. The cell may be in any
+	 * state.
+	 */
+	public void open(int cell, double distance, int parent) {
+		if (state[cell] == UNSEEN) {
+			if (touchedCount == touched.length) {
+				touched = Arrays.copyOf(touched, touchedCount * 2);
+			}
+			touched[touchedCount++] = cell;
+		}
+		this.distance[cell] = distance;
+		this.parent[cell] = parent;
+		state[cell] = OPEN;
+		if (journaling) {
+			record(cell);
+		}
+	}
+
+	public void close(int cell) {
+		state[cell] = CLOSED;
+		if (journaling) {
+			record(cell);
+		}
+	}
+
+	public void retire(int cell) {
+		state[cell] = RETIRED;
+		if (journaling) {
+			record(cell);
+		}
+	}
+
+	/**
+	 * Starts or stops recording the cells whose state or parent changes.
+	 * Stopping drops the journal.
+	 */
+	public void setJournaling(boolean journaling) {
+		this.journaling = journaling;
+		journalCount = 0;
+	}
+
+	private void record(int cell) {
+		if (journalCount == journal.length) {
+			journal = Arrays.copyOf(journal, journalCount * 2);
+		}
+		journal[journalCount++] = cell;
+	}
+
+	/** Returns the number of changes recorded since the journal was cleared. */
+	public int getJournalSize() {
+		return journalCount;
+	}
+
+	/** Returns the cell of the i-th change; a cell may appear more than once. */
+	public int getJournalCell(int index) {
+		return journal[index];
+	}
+
+	public void clearJournal() {
+		journalCount = 0;
+	}
+
+	/** Returns the number of cells discovered since the last reset. */
+	public int size() {
+		return touchedCount;
+	}
+
+	/** Returns the i-th cell discovered since the last reset. */
+	public int getCell(int index) {
+		return touched[index];
+	}
+
+	/**
+	 * Returns the cells from the root to {@code cell} along the parent links,
+	 * root first.
+	 */
+	public int[] getPath(int cell) {
+		int length = 0;
+		for (int c = cell; c >= 0; c = parent[c]) {
+			length++;
+		}
+		final int[] cells = new int[length];
+		for (int c = cell; c >= 0; c = parent[c]) {
+			cells[--length] = c;
+		}
+		return cells;
+	}
+
+	/**
+	 * Builds a chain of nodes from {@code cell} back to the root, linked
+	 * through {@link Node#parent}. Returns {@code null} for -1.
+	 */
+	public Node toNode(GridMap map, int cell) {
+		Node head = null;
+		Node last = null;
+		for (int c = cell; c >= 0; c = parent[c]) {
+			final Node n = new Node(map.getX(c), map.getY(c));
+			n.distance = distance[c];
+			if (last == null) {
+				head = n;
+			} else {
+				last.parent = n;
+			}
+			last = n;
+		}
+		return head;
+	}
+
+	/**
+	 * Adds a node for every discovered cell in the given state to
+	 * {@code nodes}, each with a parent node holding only the position of its
+	 * parent cell.
+	 */
+	public void collect(GridMap map, byte state, List<Node> nodes) {
+		for (int i = 0; i < touchedCount; i++) {
+			final int cell = touched[i];
+			if (this.state[cell] == state) {
+				final Node n = new Node(map.getX(cell), map.getY(cell));
+				n.distance = distance[cell];
+				final int p = parent[cell];
+				if (p >= 0) {
+					n.parent = new Node(map.getX(p), map.getY(p));
+				}
+				nodes.add(n);
+			}
+		}
+	}
+
+	public List<Node> getNodes(GridMap map, byte state) {
+		final List<Node> nodes = new ArrayList<Node>();
+		if (map != null) {
+			collect(map, state, nodes);
+		}
+		return nodes;
+	}
+
+}
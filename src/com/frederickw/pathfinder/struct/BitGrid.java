@@ -0,0 +1,172 @@
+package com.frederickw.pathfinder.struct;
+
+import java.util.Arrays;
+
+/**
+ * A two-dimensional bitset packed into a {@code long[]}, one bit per cell in
+ * row-major order. The grid grows on demand when a bit outside its current
+ * bounds is set, and reads outside those bounds return {@code false}.
+ */
+public final class BitGrid {
+
+    private long[] bits;
+    private int stride;
+    private int rows;
+    private int count;
+
+    public BitGrid() {
+        this(0, 0);
+    }
+
+    public BitGrid(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("invalid size");
+        }
+        stride = width;
+        rows = height;
+        bits = new long[words(width * height)];
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    public int getWidth() {
+        return stride;
+    }
+
+    public int getHeight() {
+        return rows;
+    }
+
+    /** Returns the packed index of a cell; only meaningful inside the bounds. */
+    public int index(int x, int y) {
+        return y * stride + x;
+    }
+
+    public int x(int index) {
+        return index % stride;
+    }
+
+    public int y(int index) {
+        return index / stride;
+    }
+
+    public boolean get(int x, int y) {
+        if (x < 0 || y < 0 || x >= stride || y >= rows) {
+            return false;
+        }
+        final int i = y * stride + x;
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    public boolean get(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /** Sets a bit, growing the grid if needed. Returns true if it changed. */
+    public boolean set(int x, int y) {
+        if (x < 0 || y < 0) {
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ")");
+        }
+        if (x >= stride || y >= rows) {
+            resize(Math.max(x + 1, stride), Math.max(y + 1, rows));
+        }
+        final int i = y * stride + x;
+        final long mask = 1L << i;
+        if ((bits[i >>> 6] & mask) != 0) {
+            return false;
+        }
+        bits[i >>> 6] |= mask;
+        count++;
+        return true;
+    }
+
+    /** Clears a bit. Returns true if it changed. */
+    public boolean clear(int x, int y) {
+        if (!get(x, y)) {
+            return false;
+        }
+        final int i = y * stride + x;
+        bits[i >>> 6] &= ~(1L << i);
+        count--;
+        return true;
+    }
+
+    public void clear() {
+        if (count > 0) {
+            Arrays.fill(bits, 0L);
+            count = 0;
+        }
+    }
+
+    public int cardinality() {
+        return count;
+    }
+
+    /**
+     * Returns the packed index of the first set bit at or after
+     * {@code fromIndex}, or -1 if there is none.
+     */
+    public int nextSetBit(int fromIndex) {
+        final int size = stride * rows;
+        if (fromIndex >= size) {
+            return -1;
+        }
+        int w = fromIndex >>> 6;
+        long word = bits[w] & (-1L << fromIndex);
+        for (;;) {
+            if (word != 0) {
+                final int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                return i < size ? i : -1;
+            }
+            if (++w == bits.length) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+
+    /** Resizes the grid, keeping every bit that still fits. */
+    public void resize(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("invalid size");
+        }
+        if (width == stride && height == rows) {
+            return;
+        }
+        final long[] resized = new long[words(width * height)];
+        int kept = 0;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            final int x = i % stride;
+            final int y = i / stride;
+            if (x < width && y < height) {
+                final int j = y * width + x;
+                resized[j >>> 6] |= 1L << j;
+                kept++;
+            }
+        }
+        bits = resized;
+        stride = width;
+        rows = height;
+        count = kept;
+    }
+
+    /**
+     * Copies the bits inside {@code width} x {@code height} into a new
+     * row-major {@code long[]} whose row stride is {@code width}.
+     */
+    public long[] toLongArray(int width, int height) {
+        final long[] copy = new long[words(width * height)];
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            final int x = i % stride;
+            final int y = i / stride;
+            if (x < width && y < height) {
+                final int j = y * width + x;
+                copy[j >>> 6] |= 1L << j;
+            }
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,234 @@
+package com.frederickw.pathfinder.struct;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A monotone priority queue of non-negative {@code int} ids with
+ * {@code int} keys, for searches whose keys never fall below the last one
+ * polled and rise by a bounded amount per step, such as Dijkstra or A* with
+ * a consistent heuristic over integer edge costs.
+ * <p>
+ * Ids are kept in a ring of buckets, one per key in a window starting at the
+ * last key polled, with a bitmap of the non-empty buckets. Adding, removing
+ * and lowering a key are constant time; polling skips empty buckets 64 at a
+ * time. Until the first poll the window starts at the smallest key added.
+ * Keys below the window are queued at its start, and keys beyond it grow the
+ * ring. Equal keys come out last in, first out.
+ */
+public final class BucketQueue {
+
+    private final static int ABSENT = -2;
+    private final static int DEFAULT_CAPACITY = 13;
+    private int size;
+    private int min;
+    private int max;
+    private boolean polled;
+    private int mask;
+    private int[] heads;
+    private long[] occupied;
+    private int[] next;
+    private int[] prev;
+    private int[] keys;
+
+    /**
+     * Creates a queue for keys that exceed the last key polled by at most
+     * {@code span}.
+     */
+    public BucketQueue(int span) {
+        if (span < 0) {
+            throw new IllegalArgumentException("invalid span");
+        }
+        allocateBuckets(span + 1);
+        next = new int[DEFAULT_CAPACITY];
+        prev = new int[DEFAULT_CAPACITY];
+        keys = new int[DEFAULT_CAPACITY];
+        Arrays.fill(prev, ABSENT);
+    }
+
+    private void allocateBuckets(int buckets) {
+        int capacity = 64;
+        while (capacity < buckets) {
+            capacity <<= 1;
+        }
+        mask = capacity - 1;
+        heads = new int[capacity];
+        Arrays.fill(heads, -1);
+        occupied = new long[capacity >>> 6];
+    }
+
+    public void clear() {
+        for (int w = 0; w < occupied.length; w++) {
+            for (long bits = occupied[w]; bits != 0; bits &= bits - 1) {
+                final int bucket = (w << 6) + Long.numberOfTrailingZeros(bits);
+                for (int id = heads[bucket]; id >= 0; id = next[id]) {
+                    prev[id] = ABSENT;
+                }
+                heads[bucket] = -1;
+            }
+            occupied[w] = 0;
+        }
+        size = 0;
+        polled = false;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return id < prev.length && prev[id] != ABSENT;
+    }
+
+    /** Returns the key of a queued id. */
+    public int getKey(int id) {
+        return keys[id];
+    }
+
+    public void add(int id, int key) {
+        if (id < 0) {
+            throw new IllegalArgumentException("negative id");
+        }
+        if (id >= prev.length) {
+            final int length = prev.length;
+            final int capacity = Math.max(id + 1, length * 2);
+            next = Arrays.copyOf(next, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            Arrays.fill(prev, length, capacity, ABSENT);
+        } else if (prev[id] != ABSENT) {
+            throw new IllegalStateException("id " + id + " already queued");
+        }
+        link(id, key);
+        size++;
+    }
+
+    /** Removes and returns an id with the smallest key. */
+    public int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        final int bucket = firstBucket();
+        min += (bucket - min) & mask;
+        polled = true;
+        final int id = heads[bucket];
+        unlink(id);
+        size--;
+        return id;
+    }
+
+    /** Returns the smallest key queued. */
+    public int peekKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return min + ((firstBucket() - min) & mask);
+    }
+
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        unlink(id);
+        size--;
+        return true;
+    }
+
+    /**
+     * Lowers the key of a queued id. Returns {@code false} if the id is not
+     * queued.
+     */
+    public boolean decreaseKey(int id, int key) {
+        if (!contains(id)) {
+            return false;
+        }
+        if (key < keys[id]) {
+            unlink(id);
+            link(id, key);
+        }
+        return true;
+    }
+
+    private void link(int id, int key) {
+        if (size == 0 && !polled) {
+            min = key;
+            max = key;
+        } else if (key < min) {
+            if (polled) {
+                key = min;
+            } else {
+                min = key;
+            }
+        }
+        if (key > max) {
+            max = key;
+        }
+        if (max - min > mask) {
+            grow(max - min + 1);
+        }
+        final int bucket = key & mask;
+        final int head = heads[bucket];
+        next[id] = head;
+        prev[id] = -1;
+        if (head >= 0) {
+            prev[head] = id;
+        } else {
+            occupied[bucket >>> 6] |= 1L << bucket;
+        }
+        heads[bucket] = id;
+        keys[id] = key;
+    }
+
+    private void unlink(int id) {
+        final int p = prev[id];
+        final int n = next[id];
+        if (p >= 0) {
+            next[p] = n;
+        } else {
+            final int bucket = keys[id] & mask;
+            heads[bucket] = n;
+            if (n < 0) {
+                occupied[bucket >>> 6] &= ~(1L << bucket);
+            }
+        }
+        if (n >= 0) {
+            prev[n] = p;
+        }
+        prev[id] = ABSENT;
+    }
+
+    private int firstBucket() {
+        final int start = min & mask;
+        int w = start >>> 6;
+        long bits = occupied[w] & (-1L << start);
+        for (int i = 0; i <= occupied.length; i++) {
+            if (bits != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            w = (w + 1) & (occupied.length - 1);
+            bits = occupied[w];
+        }
+        throw new IllegalStateException();
+    }
+
+    private void grow(int buckets) {
+        final int[] oldHeads = heads;
+        final long[] oldOccupied = occupied;
+        allocateBuckets(buckets);
+        for (int w = 0; w < oldOccupied.length; w++) {
+            for (long bits = oldOccupied[w]; bits != 0; bits &= bits - 1) {
+                int id = oldHeads[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                while (id >= 0) {
+                    final int following = next[id];
+                    link(id, keys[id]);
+                    id = following;
+                }
+            }
+        }
+    }
+
+}
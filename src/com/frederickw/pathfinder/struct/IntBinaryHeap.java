@@ -0,0 +1,245 @@
+package com.frederickw.pathfinder.struct;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of non-negative {@code int} ids ordered by a
+ * {@code double} key, without boxing or {@code Comparable} dispatch. The heap
+ * slot of every id is tracked, so {@link #contains(int)} is constant time and
+ * {@link #decreaseKey(int, double)} logarithmic.
+ * <p>
+ * Each id may also carry a second key that orders ids whose keys are equal;
+ * it is 0 unless given. Ids equal in both come out in no particular order.
+ */
+public final class IntBinaryHeap {
+
+    private final static int DEFAULT_CAPACITY = 13;
+    private int size;
+    private int[] ids;
+    private double[] keys;
+    private double[] ties;
+    private int[] positions;
+
+    public IntBinaryHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntBinaryHeap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid capacity");
+        }
+        ids = new int[capacity + 1];
+        keys = new double[capacity + 1];
+        ties = new double[capacity + 1];
+        positions = new int[capacity];
+    }
+
+    public void clear() {
+        for (int i = 1; i <= size; i++) {
+            positions[ids[i]] = 0;
+        }
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return id < positions.length && positions[id] != 0;
+    }
+
+    /** Returns the key of a queued id. */
+    public double getKey(int id) {
+        return keys[positions[id]];
+    }
+
+    /** Returns the second key of a queued id. */
+    public double getTie(int id) {
+        return ties[positions[id]];
+    }
+
+    public void add(int id, double key) {
+        add(id, key, 0.0);
+    }
+
+    public void add(int id, double key, double tie) {
+        if (id < 0) {
+            throw new IllegalArgumentException("negative id");
+        }
+        if (id >= positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(id + 1, positions.length * 2));
+        } else if (positions[id] != 0) {
+            throw new IllegalStateException("id " + id + " already queued");
+        }
+        if (ids.length == size + 1) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            ties = Arrays.copyOf(ties, ties.length * 2);
+        }
+        size++;
+        percolateUp(size, id, key, tie);
+    }
+
+    /** Returns the id with the smallest key without removing it. */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return ids[1];
+    }
+
+    public double peekKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return keys[1];
+    }
+
+    /** Returns the second key of the id {@link #peek()} returns. */
+    public double peekTie() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return ties[1];
+    }
+
+    /** Removes and returns the id with the smallest key. */
+    public int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return removeAt(1);
+    }
+
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        removeAt(positions[id]);
+        return true;
+    }
+
+    /**
+     * Lowers the key of a queued id. Returns {@code false} if the id is not
+     * queued.
+     */
+    public boolean decreaseKey(int id, double key) {
+        return decreaseKey(id, key, 0.0);
+    }
+
+    public boolean decreaseKey(int id, double key, double tie) {
+        if (!contains(id)) {
+            return false;
+        }
+        percolateUp(positions[id], id, key, tie);
+        return true;
+    }
+
+    /**
+     * Changes the key of a queued id in either direction. Returns
+     * {@code false} if the id is not queued.
+     */
+    public boolean update(int id, double key) {
+        return update(id, key, 0.0);
+    }
+
+    public boolean update(int id, double key, double tie) {
+        if (!contains(id)) {
+            return false;
+        }
+        final int position = positions[id];
+        if (percolateUp(position, id, key, tie) == position) {
+            percolateDown(position, id, key, tie);
+        }
+        return true;
+    }
+
+    private int removeAt(int position) {
+        final int result = ids[position];
+        positions[result] = 0;
+        final int lastId = ids[size];
+        final double lastKey = keys[size];
+        final double lastTie = ties[size];
+        size--;
+        if (position <= size) {
+            if (percolateUp(position, lastId, lastKey, lastTie) == position) {
+                percolateDown(position, lastId, lastKey, lastTie);
+            }
+        }
+        return result;
+    }
+
+    private int percolateUp(final int position, final int id,
+            final double key, final double tie) {
+        int hole = position;
+        while (hole > 1 && less(key, tie, hole / 2)) {
+            final int next = hole / 2;
+            move(next, hole);
+            hole = next;
+        }
+        ids[hole] = id;
+        keys[hole] = key;
+        ties[hole] = tie;
+        positions[id] = hole;
+        return hole;
+    }
+
+    private void percolateDown(final int position, final int id,
+            final double key, final double tie) {
+        int hole = position;
+        while ((hole * 2) <= size) {
+            int child = hole * 2;
+            if (child != size
+                    && less(keys[child + 1], ties[child + 1], child)) {
+                child++;
+            }
+            if (!less(keys[child], ties[child], key, tie)) {
+                break;
+            }
+            move(child, hole);
+            hole = child;
+        }
+        ids[hole] = id;
+        keys[hole] = key;
+        ties[hole] = tie;
+        positions[id] = hole;
+    }
+
+    private boolean less(double key, double tie, int position) {
+        return less(key, tie, keys[position], ties[position]);
+    }
+
+    private static boolean less(double key1, double tie1, double key2,
+            double tie2) {
+        return key1 < key2 || (key1 == key2 && tie1 < tie2);
+    }
+
+    private void move(int from, int to) {
+        final int id = ids[from];
+        ids[to] = id;
+        keys[to] = keys[from];
+        ties[to] = ties[from];
+        positions[id] = to;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("[ ");
+        for (int i = 1; i < size + 1; i++) {
+            if (i != 1) {
+                sb.append(", ");
+            }
+            sb.append(ids[i]).append('=').append(keys[i]);
+        }
+        sb.append(" ]");
+        return sb.toString();
+    }
+
+}